@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.stream.IntStream;
+
+/**
+ * Loads the card images from the resources directory.
+ */
+class CardImages {
+
+    private CardImages() {}
+
+    /**
+     * Loads an image resource.
+     *
+     * @param filename - the resource file name.
+     * @return - the decoded image.
+     */
+    static BufferedImage load(String filename) {
+        URL imageResource = CardImages.class.getClassLoader().getResource(filename);
+        if (imageResource == null)
+            throw new RuntimeException(new FileNotFoundException(filename));
+        try {
+            return ImageIO.read(imageResource);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the images of all the cards in the deck. The image files are decoded in parallel, since the time it
+     * takes grows with the deck size.
+     *
+     * @param config - the game configuration.
+     * @return - the image of each card id.
+     */
+    static BufferedImage[] loadDeck(Config config) {
+        assert config.featureSize < 10; // otherwise there will be naming conflicts
+        return IntStream.range(0, config.deckSize).parallel()
+                .mapToObj(i -> load("cards/" + UserInterfaceSwing.intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png"))
+                .toArray(BufferedImage[]::new);
+    }
+
+    /**
+     * @return - the image of an empty slot.
+     */
+    static BufferedImage loadEmptyCard() {
+        return load("cards/empty_card.png");
+    }
+}
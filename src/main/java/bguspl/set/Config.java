@@ -7,6 +7,7 @@ import java.nio.file.InvalidPathException;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Properties;
+import java.util.SplittableRandom;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,6 +22,11 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed all the game's randomness is derived from (for reproducible games)
+     */
+    public final long seed;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -51,11 +57,22 @@ public class Config {
      */
     public final int players;
 
+    /**
+     * The names of the AI strategies driving the computer players (e.g. random, greedy, delayed)
+     * Note: if there are more computer players than strategies, the remaining players use the random strategy.
+     */
+    public final String[] computerStrategies;
+
     /**
      * Whether to print out hints to the console or not
      */
     public final boolean hints;
 
+    /**
+     * The minimal number of sets the dealer keeps on the table when refilling it (0 for refilling blindly)
+     */
+    public final int refillMinSets;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -86,6 +103,39 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The file keeping the players' cumulative standings across games (empty for no leaderboard)
+     */
+    public final String leaderboardFile;
+
+    /**
+     * The directory the results of finished games are stored in (empty for not storing them)
+     */
+    public final String gameResultsDirectory;
+
+    /**
+     * The file a running game is checkpointed to (empty for no checkpoints)
+     */
+    public final String checkpointFile;
+
+    /**
+     * The number of milliseconds between checkpoints of a running game
+     */
+    public final long checkpointMillis;
+
+    /**
+     * The maximal number of bytes a token placement, a claims check and a table refill may allocate once the game
+     * warmed up (negative for not tracking the allocations)
+     */
+    public final long tokenAllocationBudget;
+    public final long claimAllocationBudget;
+    public final long cardsAllocationBudget;
+
+    /**
+     * The number of milliseconds between logging the cpu, blocked and waited times of the game threads (0 for none)
+     */
+    public final long threadStatsMillis;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -132,6 +182,16 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The directory the frames of the game are recorded to when there is no display (empty for no recording)
+     */
+    public final String recordDirectory;
+
+    /**
+     * The number of frames per second recorded (frames that did not change are skipped)
+     */
+    public final int recordFramesPerSecond;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +215,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    public static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -193,6 +253,11 @@ public class Config {
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
 
+        // randomness
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? System.nanoTime() : Long.parseLong(seedString);
+        logger.info("random seed: " + seed);
+
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
@@ -202,14 +267,26 @@ public class Config {
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        String[] strategies = properties.getProperty("ComputerStrategies", "random").split(",");
+        computerStrategies = new String[computerPlayers];
+        Arrays.setAll(computerStrategies, i -> i < strategies.length ? strategies[i].trim() : "random");
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        refillMinSets = Integer.parseInt(properties.getProperty("RefillMinSets", "0"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        leaderboardFile = properties.getProperty("LeaderboardFile", "").trim();
+        gameResultsDirectory = properties.getProperty("GameResultsDirectory", "").trim();
+        checkpointFile = properties.getProperty("CheckpointFile", "").trim();
+        checkpointMillis = (long) (Double.parseDouble(properties.getProperty("CheckpointSeconds", "5")) * 1000.0);
+        tokenAllocationBudget = parseBudget(properties.getProperty("TokenAllocationBudget", ""));
+        claimAllocationBudget = parseBudget(properties.getProperty("ClaimAllocationBudget", ""));
+        cardsAllocationBudget = parseBudget(properties.getProperty("CardsAllocationBudget", ""));
+        threadStatsMillis = (long) (Double.parseDouble(properties.getProperty("ThreadStatsSeconds", "0")) * 1000.0);
 
         // ui settings
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
@@ -224,6 +301,8 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        recordDirectory = properties.getProperty("RecordDirectory", "").trim();
+        recordFramesPerSecond = Integer.parseInt(properties.getProperty("RecordFramesPerSecond", "10"));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -241,6 +320,34 @@ public class Config {
         }
     }
 
+    /**
+     * Creates the random number generator of a game component. Each component gets its own generator derived from
+     * the seed, so the sequence it draws does not depend on the other components.
+     *
+     * @param component - the component name (e.g. "dealer", "player-1").
+     * @return - a new random number generator.
+     */
+    public SplittableRandom random(String component) {
+        return new SplittableRandom(seed ^ component.hashCode() * 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * @return - a fingerprint of the settings that affect the game play, for comparing the results of games played
+     *           with the same rules.
+     */
+    public long fingerprint() {
+        long[] settings = {featureSize, featureCount, humanPlayers, computerPlayers, rows, columns, turnTimeoutMillis,
+                pointFreezeMillis, penaltyFreezeMillis, refillMinSets};
+        long hash = 0xcbf29ce484222325L;
+        for (long setting : settings)
+            hash = (hash ^ setting) * 0x100000001b3L;
+        return hash;
+    }
+
+    private static long parseBudget(String bytes) {
+        return bytes.isBlank() ? -1 : Long.parseLong(bytes.trim());
+    }
+
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
@@ -39,12 +39,13 @@ class InputManager extends KeyAdapter {
 
     @Override
     public void keyPressed(KeyEvent e) {
-        // dispatch the key event to the player according to the key map
+        // this runs on the event dispatch thread: only timestamp the key press and hand it to the player without
+        // blocking (the player's thread validates the slot and logs it), so the ui stays responsive
+        long pressTime = System.nanoTime();
         int keyCode = e.getKeyCode();
+        if (keyCode >= keyMap.length) return;
         int player = keyMap[keyCode] - 1;
-        if (player >= 0){
-            logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
-            players[player].keyPressed(keyToSlot[keyCode]);
-        }
+        if (player >= 0 && players[player] != null) // the window may open before the players are created
+            players[player].keyPressed(keyToSlot[keyCode], pressTime);
     }
 }
@@ -1,11 +1,16 @@
 package bguspl.set;
 
+import bguspl.set.ex.Checkpoint;
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameResults;
+import bguspl.set.ex.Leaderboard;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
+import bguspl.set.ex.ai.Strategy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
@@ -33,10 +38,11 @@ public class Main {
     /**
      * The game's main function. Creates all data structures and initializes the threads.
      *
-     * @param args - unused.
+     * @param args - optionally "--resume <checkpoint file>", for resuming a checkpointed game.
      */
     public static void main(String[] args) {
 
+        long startTime = System.nanoTime();
         mainThread = Thread.currentThread();
 
         // create the game environment objects
@@ -44,26 +50,79 @@ public class Main {
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
         Config config = new Config(logger, "config.properties");
         Util util = new UtilImpl(config);
+        if (config.threadStatsMillis > 0) ThreadProfiler.start(logger, config.threadStatsMillis);
 
+        // the swing user interface (window and card images) is created in the background while the game starts; with no
+        // display, the game may be recorded by an offscreen user interface instead
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
-        }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        UserInterfaceDeferred deferredUi = new UserInterfaceDeferred(logger, startTime);
+        ThreadLogger uiLoaderThread = new ThreadLogger(() -> {
+            UserInterface actualUi = null;
+            try {
+                actualUi = new UserInterfaceSwing(logger, config, players);
+            } catch (UnsupportedOperationException | IllegalArgumentException e) {
+                logger.severe("error creating swing user interface: " + e.getMessage());
+                if (!config.recordDirectory.isEmpty()) {
+                    try {
+                        actualUi = new UserInterfaceOffscreen(logger, config);
+                        logger.info("recording the game to " + config.recordDirectory);
+                    } catch (IOException | RuntimeException recordError) {
+                        logger.severe("error creating offscreen user interface: " + recordError.getMessage());
+                    }
+                }
+                if (actualUi == null) {
+                    logger.severe("will try to run without user interface");
+                    System.out.println("running without a user interface. Check logs.");
+                }
+                if (config.humanPlayers > 0)
+                    logger.severe("warning: running with human players with no user interface");
+            }
+            deferredUi.ready(actualUi);
+            ThreadLogger.logStop(logger, Thread.currentThread().getName());
+        }, "ui-loader", logger);
+        uiLoaderThread.startWithLog();
+        UserInterface ui = new UserInterfaceDecorator(logger, util, deferredUi);
 
         Env env = new Env(logger, config, ui, util);
 
+        // open the leaderboard the results of the game are added to
+        Leaderboard leaderboard = null;
+        if (!config.leaderboardFile.isEmpty()) {
+            try {
+                leaderboard = Leaderboard.open(Paths.get(config.leaderboardFile));
+            } catch (IOException e) {
+                logger.severe("error opening leaderboard file " + config.leaderboardFile + ": " + e.getMessage());
+            }
+        }
+
+        // open the store the result of the game is added to
+        GameResults results = null;
+        if (!config.gameResultsDirectory.isEmpty()) {
+            try {
+                results = new GameResults(Paths.get(config.gameResultsDirectory));
+            } catch (IOException e) {
+                logger.severe("error opening game results directory " + config.gameResultsDirectory + ": " + e.getMessage());
+            }
+        }
+
         // create the game entities
         Table table = new Table(env);
-        dealer = new Dealer(env, table, players);
-        for (int i = 0; i < players.length; i++)
-            players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        dealer = new Dealer(env, table, players, leaderboard, results);
+        for (int i = 0; i < players.length; i++) {
+            boolean human = i < env.config.humanPlayers;
+            Strategy strategy = human ? null : Strategy.create(config.computerStrategies[i - config.humanPlayers], env, config.random("player-" + i));
+            players[i] = new Player(env, dealer, table, i, human, strategy);
+        }
+
+        // resume the checkpointed game
+        if (args.length >= 2 && args[0].equals("--resume")) {
+            try {
+                dealer.restore(Checkpoint.read(Paths.get(args[1]), config));
+                logger.info("resumed the game checkpointed in " + args[1]);
+            } catch (IOException e) {
+                logger.severe("error resuming the game: " + e.getMessage() + ", starting a new game");
+            }
+        }
 
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
@@ -79,6 +138,24 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            ThreadProfiler.stop();
+            if (leaderboard != null) {
+                leaderboard.top().forEach(standing -> logger.info("leaderboard: " + standing));
+                try {
+                    leaderboard.close();
+                } catch (IOException e) {
+                    logger.severe("error closing leaderboard file: " + e.getMessage());
+                }
+            }
+            if (results != null) {
+                try {
+                    logger.info("average game duration with this configuration: "
+                            + results.averageDurationMillis(config.fingerprint()) + "ms over " + results.games(config.fingerprint()) + " games");
+                    results.close();
+                } catch (IOException e) {
+                    logger.severe("error closing game results: " + e.getMessage());
+                }
+            }
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
@@ -13,9 +13,19 @@ public class ThreadLogger extends Thread {
 
     public void startWithLog() {
         logStart(logger, getName());
+        ThreadProfiler.register(this, getName());
         super.start();
     }
 
+    @Override
+    public void run() {
+        try {
+            super.run();
+        } finally {
+            ThreadProfiler.exit();
+        }
+    }
+
     public void joinWithLog() throws InterruptedException {
         try {
             join();
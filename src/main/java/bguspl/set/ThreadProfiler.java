@@ -0,0 +1,195 @@
+package bguspl.set;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * This class samples the CPU time, and the times blocked on monitors and waiting, of the registered game threads, and
+ * logs them per role (dealer, player-N, computer-N, EDT, ...) periodically and when the profiling stops. Threads of
+ * the same role (e.g. the dealers of concurrent games) are summed.
+ *
+ * Threads are registered by whoever starts them; registering does nothing while the profiler is not running. A thread
+ * calls exit when it is done, so the time it ran since the last sample is counted too.
+ */
+public class ThreadProfiler {
+
+    /**
+     * The last sampled totals of a thread.
+     */
+    private static class Sample {
+        private final String role;
+        private long cpuNanos;
+        private long blockedCount;
+        private long blockedMillis;
+        private long waitedCount;
+        private long waitedMillis;
+
+        private Sample(Thread thread, String role) {
+            this.role = role;
+            if (thread.isAlive()) update(thread.getId(), threads.getThreadInfo(thread.getId()));
+        }
+
+        private void update(long id, ThreadInfo info) {
+            if (info == null) return;
+            cpuNanos = threads.isThreadCpuTimeEnabled() ? Math.max(threads.getThreadCpuTime(id), 0) : 0;
+            blockedCount = info.getBlockedCount();
+            blockedMillis = info.getBlockedTime();
+            waitedCount = info.getWaitedCount();
+            waitedMillis = info.getWaitedTime();
+        }
+    }
+
+    /**
+     * The statistics of a role: cpu time (nanoseconds), blocked count and time, waited count and time, threads.
+     */
+    private static final int CPU = 0, BLOCKED_COUNT = 1, BLOCKED_MILLIS = 2, WAITED_COUNT = 3, WAITED_MILLIS = 4,
+            THREADS = 5, STATS = 6;
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    /**
+     * The registered threads that are alive (as of the last sample).
+     */
+    private static final Map<Thread, Sample> registered = new ConcurrentHashMap<>();
+
+    /**
+     * The statistics of each role since the profiling started, and of the threads that exited since the last sample
+     * (guarded by the class).
+     */
+    private static final Map<String, long[]> totals = new TreeMap<>();
+    private static final Map<String, long[]> exited = new TreeMap<>();
+
+    private static ScheduledExecutorService sampler;
+    private static ScheduledFuture<?> samples;
+    private static Logger logger;
+    private static long startTime;
+    private static long lastSampleTime;
+    private static volatile boolean running;
+
+    private ThreadProfiler() {}
+
+    /**
+     * Starts sampling the registered threads.
+     *
+     * @param logger       - the logger the statistics are logged to.
+     * @param periodMillis - the number of milliseconds between samples.
+     */
+    public static synchronized void start(Logger logger, long periodMillis) {
+        if (running) return;
+        ThreadProfiler.logger = logger;
+        if (threads.isThreadCpuTimeSupported()) threads.setThreadCpuTimeEnabled(true);
+        if (threads.isThreadContentionMonitoringSupported()) threads.setThreadContentionMonitoringEnabled(true);
+        totals.clear();
+        exited.clear();
+        startTime = lastSampleTime = System.currentTimeMillis();
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "thread-profiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        samples = sampler.scheduleAtFixedRate(() -> report(sample(), "last " + (System.currentTimeMillis() - lastSampleTime) + "ms"),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    /**
+     * Stops sampling, and logs the statistics of each role since the profiling started.
+     */
+    public static synchronized void stop() {
+        if (!running) return;
+        samples.cancel(false);
+        sampler.shutdown();
+        sample();
+        lastSampleTime = startTime;
+        report(totals, "total");
+        registered.clear();
+        running = false;
+    }
+
+    /**
+     * Registers a game thread (before or after it starts). The thread is measured from the time it is registered, and
+     * registering it again keeps its first role.
+     *
+     * @param thread - the thread.
+     * @param role   - the role of the thread in the game.
+     * @return - the thread.
+     */
+    public static Thread register(Thread thread, String role) {
+        if (running) registered.computeIfAbsent(thread, t -> new Sample(t, role));
+        return thread;
+    }
+
+    /**
+     * Called by a registered thread when it is done (it is not sampled afterwards, even if it runs other tasks).
+     */
+    public static void exit() {
+        if (!running) return;
+        Thread thread = Thread.currentThread();
+        Sample last = registered.remove(thread);
+        if (last == null) return;
+        synchronized (ThreadProfiler.class) {
+            count(thread, last, exited);
+        }
+    }
+
+    /**
+     * Samples the registered threads, and drops the ones that terminated without calling exit.
+     *
+     * @return - the statistics of each role since the last sample.
+     */
+    private static synchronized Map<String, long[]> sample() {
+        Map<String, long[]> interval = new TreeMap<>(exited);
+        exited.clear();
+        for (Iterator<Map.Entry<Thread, Sample>> entries = registered.entrySet().iterator(); entries.hasNext(); ) {
+            Map.Entry<Thread, Sample> entry = entries.next();
+            Thread thread = entry.getKey();
+            if (thread.getState() == Thread.State.NEW) continue;
+            if (!count(thread, entry.getValue(), interval)) entries.remove(); // its time up to the last sample was counted
+        }
+        interval.forEach((role, stats) -> {
+            long[] total = totals.computeIfAbsent(role, r -> new long[STATS]);
+            for (int i = 0; i < STATS; i++)
+                total[i] = i == THREADS ? Math.max(total[i], stats[i]) : total[i] + stats[i];
+        });
+        return interval;
+    }
+
+    /**
+     * Adds the statistics of a thread since its last sample to the statistics of its role.
+     *
+     * @return - false iff the thread terminated.
+     */
+    private static boolean count(Thread thread, Sample last, Map<String, long[]> roles) {
+        long cpuNanos = threads.isThreadCpuTimeEnabled() ? threads.getThreadCpuTime(thread.getId()) : -1;
+        ThreadInfo info = threads.getThreadInfo(thread.getId());
+        if (info == null) return false;
+        long[] stats = roles.computeIfAbsent(last.role, role -> new long[STATS]);
+        if (cpuNanos >= 0) stats[CPU] += cpuNanos - last.cpuNanos;
+        stats[BLOCKED_COUNT] += info.getBlockedCount() - last.blockedCount;
+        stats[BLOCKED_MILLIS] += Math.max(info.getBlockedTime() - last.blockedMillis, 0);
+        stats[WAITED_COUNT] += info.getWaitedCount() - last.waitedCount;
+        stats[WAITED_MILLIS] += Math.max(info.getWaitedTime() - last.waitedMillis, 0);
+        stats[THREADS]++;
+        last.update(thread.getId(), info);
+        return true;
+    }
+
+    private static synchronized void report(Map<String, long[]> roles, String period) {
+        long wallMillis = Math.max(System.currentTimeMillis() - lastSampleTime, 1);
+        lastSampleTime = System.currentTimeMillis();
+        roles.forEach((role, stats) -> logger.info(String.format(
+                "thread stats (%s): %s (%d threads): cpu %dms (%.1f%%), blocked %d times for %dms, waited %d times for %dms",
+                period, role, stats[THREADS], stats[CPU] / 1_000_000, 100.0 * stats[CPU] / 1_000_000 / wallMillis,
+                stats[BLOCKED_COUNT], stats[BLOCKED_MILLIS], stats[WAITED_COUNT], stats[WAITED_MILLIS])));
+    }
+}
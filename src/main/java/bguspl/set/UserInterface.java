@@ -18,6 +18,19 @@ public interface UserInterface {
      */
     void removeCard(int slot);
 
+    /**
+     * Draw the card images corresponding to the card ids in the specified slots (one after the other).
+     * @param cards - the card ids.
+     * @param slots - the slot numbers, respectively.
+     */
+    void placeCards(int[] cards, int[] slots);
+
+    /**
+     * Draw an empty card image in the specified slots (one after the other).
+     * @param slots - the slot numbers.
+     */
+    void removeCards(int[] slots);
+
     /**
      * Draw a player name text in the specified slot.
      * @param player - the card id.
@@ -65,6 +78,28 @@ public interface UserInterface {
      */
     void setFreeze(int player, long millies);
 
+    /**
+     * Show a countdown to the specified time, updated by the user interface at its own refresh rate (so it needs to
+     * be called once per turn, rather than on every change of the displayed time).
+     * @param deadline   - the time the countdown reaches zero (as in System.currentTimeMillis).
+     * @param warnMillis - the remaining time from which the timer is painted in red and displays milliseconds.
+     */
+    void setCountdownDeadline(long deadline, long warnMillis);
+
+    /**
+     * Show the time elapsed since the specified time, updated by the user interface at its own refresh rate.
+     * @param start - the time to count from (as in System.currentTimeMillis).
+     */
+    void setElapsedSince(long start);
+
+    /**
+     * Show the remaining freeze time of a player until the specified time, updated by the user interface at its own
+     * refresh rate. The player name is shown in red until then.
+     * @param player   - the player id.
+     * @param deadline - the time the freeze ends (as in System.currentTimeMillis).
+     */
+    void setFreezeDeadline(int player, long deadline);
+
     /**
      * Set the score for the relevent player in the player score panel.
      * @param player - the player id.
@@ -0,0 +1,174 @@
+package bguspl.set;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * A user interface that buffers the calls made while the actual user interface is still being created, and replays
+ * them once it is ready. This lets the game start dealing without waiting for the window and card images to load.
+ * Once it is ready, the frequent calls (tokens, timers) are forwarded directly, without allocating a buffered call.
+ */
+public class UserInterfaceDeferred implements UserInterface {
+
+    private final Logger logger;
+
+    /**
+     * The time the game started (System.nanoTime), for measuring the startup.
+     */
+    private final long startTime;
+
+    /**
+     * The calls made before the user interface was ready, in order.
+     */
+    private final Queue<Consumer<UserInterface>> pending = new ArrayDeque<>();
+
+    /**
+     * The actual user interface (null if it could not be created).
+     */
+    private UserInterface ui;
+
+    /**
+     * True iff the actual user interface was created (or failed to be created) and the pending calls were replayed.
+     */
+    private volatile boolean ready;
+
+    private volatile boolean cardPlaced;
+
+    public UserInterfaceDeferred(Logger logger, long startTime) {
+        this.logger = logger;
+        this.startTime = startTime;
+    }
+
+    /**
+     * Called once the actual user interface is created: replays the pending calls and forwards all calls from now on.
+     *
+     * @param ui - the actual user interface, or null if it could not be created.
+     */
+    public void ready(UserInterface ui) {
+        int buffered;
+        synchronized (this) {
+            this.ui = ui;
+            buffered = pending.size();
+            if (ui != null)
+                for (Consumer<UserInterface> call : pending)
+                    call.accept(ui);
+            pending.clear();
+            ready = true;
+        }
+        logger.info("time to interactive: " + (System.nanoTime() - startTime) / 1_000_000 + "ms (" + buffered + " ui calls were buffered).");
+    }
+
+    private void call(Consumer<UserInterface> call) {
+        if (!ready) {
+            synchronized (this) {
+                if (!ready) {
+                    pending.add(call);
+                    return;
+                }
+            }
+        }
+        if (ui != null) call.accept(ui);
+    }
+
+    private void cardPlaced() {
+        if (cardPlaced) return;
+        cardPlaced = true;
+        logger.info("time to first card: " + (System.nanoTime() - startTime) / 1_000_000 + "ms.");
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cardPlaced();
+        call(ui -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        call(ui -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        cardPlaced();
+        call(ui -> ui.placeCards(cards, slots));
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        call(ui -> ui.removeCards(slots));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (!ready) call(ui -> ui.placeToken(player, slot));
+        else if (ui != null) ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        call(UserInterface::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (!ready) call(ui -> ui.removeTokens(slot));
+        else if (ui != null) ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (!ready) call(ui -> ui.removeToken(player, slot));
+        else if (ui != null) ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (!ready) call(ui -> ui.setCountdown(millies, warn));
+        else if (ui != null) ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (!ready) call(ui -> ui.setElapsed(millies));
+        else if (ui != null) ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (!ready) call(ui -> ui.setFreeze(player, millies));
+        else if (ui != null) ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setCountdownDeadline(long deadline, long warnMillis) {
+        call(ui -> ui.setCountdownDeadline(deadline, warnMillis));
+    }
+
+    @Override
+    public void setElapsedSince(long start) {
+        call(ui -> ui.setElapsedSince(start));
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long deadline) {
+        call(ui -> ui.setFreezeDeadline(player, deadline));
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (!ready) call(ui -> ui.setScore(player, score));
+        else if (ui != null) ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        call(ui -> ui.announceWinner(players));
+    }
+
+    @Override
+    public void dispose() {
+        call(UserInterface::dispose);
+    }
+}
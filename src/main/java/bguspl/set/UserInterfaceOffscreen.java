@@ -0,0 +1,468 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static java.lang.String.format;
+
+/**
+ * A user interface that needs no display: it renders the board (timer, cards, tokens, players) into offscreen images
+ * and records them as a sequence of PNG files, for watching games played on headless machines.
+ *
+ * The game threads only update the state (under a lock held for a few array writes). A renderer thread copies the
+ * state and draws it at a fixed frame rate, only when it changed (or shows a running countdown or freeze time), and an
+ * encoder thread writes the frames to the disk.
+ * The frames are drawn into a fixed pool of images that are reused: if the encoder falls behind, the renderer skips
+ * frames instead of waiting. Frame files are numbered by their time (in frames since the game started), so a missing
+ * number means the previous frame was still shown.
+ */
+public class UserInterfaceOffscreen implements UserInterface {
+
+    /**
+     * The number of images frames are drawn into.
+     */
+    private static final int BUFFERS = 3;
+
+    /**
+     * A frame being drawn or encoded: its image and its time.
+     */
+    private static class Frame {
+        private final BufferedImage image;
+        private long tick;
+
+        private Frame(BufferedImage image) {
+            this.image = image;
+        }
+    }
+
+    /**
+     * Tells the encoder thread there are no more frames.
+     */
+    private static final Frame END = new Frame(null);
+
+    private final Logger logger;
+    private final Config config;
+    private final Path directory;
+
+    /**
+     * The images of the cards, and of an empty slot.
+     */
+    private final Image[] deck;
+    private final Image emptyCard;
+
+    /**
+     * The layout: the size of a frame, the height of the timer and of a players row, and the left of the grid.
+     */
+    private final int width;
+    private final int height;
+    private final int timerHeight;
+    private final int playerRowHeight;
+    private final int gridLeft;
+
+    private final Font bigFont;
+    private final Font plainFont;
+    private final Font tokenFont;
+
+    /**
+     * The state of the game, written by the game threads (guarded by this).
+     */
+    private final int[] cards;
+    private final boolean[] tokens; // tokens[slot * players + player]
+    private final long[] freezeDeadlines;
+    private final int[] scores;
+    private long timerMillis = -1; // -1 until the timer is set
+    private boolean timerWarn;
+    private boolean elapsed;
+    private long timerDeadline = -1; // the countdown deadline, or the elapsed time start (-1 for a fixed time)
+    private long warnMillis;
+    private int[] winners;
+    private boolean changed = true;
+
+    /**
+     * The copy of the state the renderer draws (owned by the renderer thread).
+     */
+    private final int[] shownCards;
+    private final boolean[] shownTokens;
+    private final long[] shownFreezeDeadlines;
+    private final int[] shownScores;
+    private long shownTimerMillis;
+    private boolean shownTimerWarn;
+    private boolean shownElapsed;
+    private long shownTimerDeadline;
+    private long shownWarnMillis;
+    private int[] shownWinners;
+
+    /**
+     * True iff the last frame showed a running countdown or freeze time, so the next one differs even if the state
+     * did not change.
+     */
+    private boolean ticking;
+
+    /**
+     * The images free for drawing, and the drawn frames waiting to be encoded.
+     */
+    private final BlockingQueue<Frame> free = new ArrayBlockingQueue<>(BUFFERS);
+    private final BlockingQueue<Frame> drawn = new ArrayBlockingQueue<>(BUFFERS + 1);
+
+    private final ThreadLogger rendererThread;
+    private final ThreadLogger encoderThread;
+
+    /**
+     * True iff the user interface was disposed of (the renderer draws the last frame and stops).
+     */
+    private volatile boolean disposed;
+
+    /**
+     * Statistics: the frames written, and skipped since the encoder fell behind.
+     */
+    private long framesWritten;
+    private long framesSkipped;
+
+    /**
+     * @param logger - the logger.
+     * @param config - the game configuration (config.recordDirectory is the directory the frames are written to).
+     * @throws IOException - if the directory cannot be created.
+     */
+    public UserInterfaceOffscreen(Logger logger, Config config) throws IOException {
+        this.logger = logger;
+        this.config = config;
+        this.directory = Files.createDirectories(Paths.get(config.recordDirectory));
+
+        deck = CardImages.loadDeck(config);
+        emptyCard = CardImages.loadEmptyCard();
+
+        int gridWidth = config.columns * config.cellWidth;
+        width = Math.max(gridWidth, config.players * config.playerCellWidth);
+        timerHeight = config.fontSize * 2;
+        playerRowHeight = config.fontSize * 3 / 2;
+        height = timerHeight + config.rows * config.cellHeight + 2 * playerRowHeight;
+        gridLeft = (width - gridWidth) / 2;
+
+        bigFont = new Font("Serif", Font.BOLD, config.fontSize);
+        plainFont = new Font("Serif", Font.PLAIN, config.fontSize);
+        tokenFont = new Font("SansSerif", Font.BOLD, Math.max(config.fontSize / 3, 10));
+
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize * config.players];
+        freezeDeadlines = new long[config.players];
+        scores = new int[config.players];
+        shownCards = new int[config.tableSize];
+        shownTokens = new boolean[tokens.length];
+        shownFreezeDeadlines = new long[config.players];
+        shownScores = new int[config.players];
+
+        for (int i = 0; i < BUFFERS; i++)
+            free.add(new Frame(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB)));
+
+        rendererThread = new ThreadLogger(this::render, "ui-renderer", logger);
+        encoderThread = new ThreadLogger(this::encode, "ui-encoder", logger);
+        rendererThread.setDaemon(true);
+        encoderThread.setDaemon(true);
+        rendererThread.startWithLog();
+        encoderThread.startWithLog();
+    }
+
+    /**
+     * The main loop of the renderer thread: draws a frame every 1/config.recordFramesPerSecond seconds if the state
+     * changed, until the user interface is disposed of.
+     */
+    private void render() {
+        long period = 1_000_000_000L / Math.max(config.recordFramesPerSecond, 1);
+        long next = System.nanoTime();
+        try {
+            for (long tick = 0; ; tick++) {
+                boolean last = disposed; // read before copying the state, so the last frame shows the final state
+                Frame frame = last ? free.take() : free.poll();
+                if (frame == null) {
+                    framesSkipped++; // the encoder is behind, the state is drawn once an image is free
+                } else if (copyState() | ticking) {
+                    draw(frame.image, System.currentTimeMillis());
+                    frame.tick = tick;
+                    drawn.add(frame);
+                } else free.add(frame);
+                if (last) break;
+                next += period;
+                LockSupport.parkNanos(next - System.nanoTime());
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            drawn.add(END);
+        }
+    }
+
+    /**
+     * The main loop of the encoder thread: writes the drawn frames to the disk and returns their images to the pool.
+     */
+    private void encode() {
+        try {
+            for (Frame frame; (frame = drawn.take()) != END; ) {
+                try {
+                    ImageIO.write(frame.image, "png", directory.resolve(format("frame-%06d.png", frame.tick)).toFile());
+                    framesWritten++;
+                } catch (IOException e) {
+                    logger.severe("error writing frame " + frame.tick + ": " + e.getMessage());
+                }
+                free.add(frame);
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Copies the state for drawing, if it changed since it was last copied.
+     *
+     * @return - true iff the state changed.
+     */
+    private synchronized boolean copyState() {
+        if (!changed) return false;
+        System.arraycopy(cards, 0, shownCards, 0, cards.length);
+        System.arraycopy(tokens, 0, shownTokens, 0, tokens.length);
+        System.arraycopy(freezeDeadlines, 0, shownFreezeDeadlines, 0, freezeDeadlines.length);
+        System.arraycopy(scores, 0, shownScores, 0, scores.length);
+        shownTimerMillis = timerMillis;
+        shownTimerWarn = timerWarn;
+        shownElapsed = elapsed;
+        shownTimerDeadline = timerDeadline;
+        shownWarnMillis = warnMillis;
+        shownWinners = winners;
+        changed = false;
+        return true;
+    }
+
+    /**
+     * Draws the copied state as it is shown at the given moment.
+     */
+    private void draw(BufferedImage image, long now) {
+        ticking = false;
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+
+            // the timer (hidden once the winner is announced, as in the swing user interface)
+            if (shownWinners == null) {
+                g.setFont(bigFont);
+                drawTimer(g, now);
+            }
+
+            // the cards and the tokens on them
+            g.setFont(tokenFont);
+            for (int slot = 0; slot < shownCards.length; slot++) {
+                int x = gridLeft + slot % config.columns * config.cellWidth;
+                int y = timerHeight + slot / config.columns * config.cellHeight;
+                g.drawImage(shownCards[slot] < 0 ? emptyCard : deck[shownCards[slot]], x, y, null);
+                g.setColor(Color.BLACK);
+                g.drawRect(x, y, config.cellWidth - 1, config.cellHeight - 1);
+                String text = tokenText(slot);
+                if (!text.isEmpty()) {
+                    g.setColor(Color.BLACK);
+                    g.drawString(text, x + (config.cellWidth - g.getFontMetrics().stringWidth(text)) / 2, y + g.getFontMetrics().getAscent());
+                }
+            }
+
+            // the players and their scores, or the winner
+            int top = timerHeight + config.rows * config.cellHeight;
+            g.setFont(bigFont);
+            if (shownWinners != null) {
+                g.setColor(Color.BLACK);
+                drawCentered(g, winnerText(shownWinners), 0, width, top + 2 * playerRowHeight - playerRowHeight / 2);
+            } else {
+                int cellWidth = width / config.players;
+                for (int player = 0; player < config.players; player++) {
+                    g.setFont(bigFont);
+                    long freeze = shownFreezeDeadlines[player] - now;
+                    ticking |= freeze > 0;
+                    g.setColor(freeze > 0 ? Color.RED : Color.BLACK);
+                    String name = freeze > 0 ? config.playerNames[player] + " (" + freeze / 1000 + ")" : config.playerNames[player];
+                    drawCentered(g, name, player * cellWidth, cellWidth, top + playerRowHeight);
+                    g.setFont(plainFont);
+                    g.setColor(Color.BLACK);
+                    drawCentered(g, Integer.toString(shownScores[player]), player * cellWidth, cellWidth, top + 2 * playerRowHeight);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Draws a text centered horizontally in a column, with its baseline slightly above a given height.
+     */
+    private static void drawCentered(Graphics2D g, String text, int left, int columnWidth, int bottom) {
+        FontMetrics metrics = g.getFontMetrics();
+        g.drawString(text, left + (columnWidth - metrics.stringWidth(text)) / 2, bottom - metrics.getDescent());
+    }
+
+    private void drawTimer(Graphics2D g, long now) {
+        long millies = shownTimerMillis;
+        boolean warn = shownTimerWarn;
+        if (shownTimerDeadline >= 0 && shownElapsed) {
+            millies = now - shownTimerDeadline;
+            ticking = true;
+        } else if (shownTimerDeadline >= 0) {
+            millies = Math.max(shownTimerDeadline - now, 0);
+            warn = millies <= shownWarnMillis;
+            ticking |= millies > 0;
+        }
+        String text;
+        if (millies < 0) text = config.turnTimeoutMillis < 0 ? "PLAY" : "GET READY...";
+        else if (shownElapsed) text = "Elapsed time: " + millies / 1000;
+        else if (warn) text = format("Remaining Time: %.2f", (double) millies / 1000.0f);
+        else text = format("Remaining Time: %d", millies / 1000L);
+        g.setColor(warn ? Color.RED : Color.BLACK);
+        drawCentered(g, text, 0, width, timerHeight);
+    }
+
+    private String tokenText(int slot) {
+        StringBuilder text = new StringBuilder();
+        for (int player = 0; player < config.players; player++) {
+            if (!shownTokens[slot * config.players + player]) continue;
+            if (text.length() > 0) text.append(", ");
+            text.append(config.playerNames[player]);
+        }
+        return text.toString();
+    }
+
+    private String winnerText(int[] players) {
+        List<String> names = Arrays.stream(players).mapToObj(id -> config.playerNames[id]).collect(Collectors.toList());
+        if (players.length == 1) return "THE WINNER IS: " + names.get(0) + "!!!";
+        return "IT IS A DRAW: " + String.join(" AND ", names) + " WON!!!";
+    }
+
+    @Override
+    public synchronized void placeCard(int card, int slot) {
+        cards[slot] = card;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeCard(int slot) {
+        cards[slot] = -1;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; i++)
+            this.cards[slots[i]] = cards[i];
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeCards(int[] slots) {
+        for (int slot : slots)
+            cards[slot] = -1;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void placeToken(int player, int slot) {
+        tokens[slot * config.players + player] = true;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeTokens() {
+        Arrays.fill(tokens, false);
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeTokens(int slot) {
+        Arrays.fill(tokens, slot * config.players, (slot + 1) * config.players, false);
+        changed = true;
+    }
+
+    @Override
+    public synchronized void removeToken(int player, int slot) {
+        tokens[slot * config.players + player] = false;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setCountdown(long millies, boolean warn) {
+        timerMillis = millies;
+        timerWarn = warn;
+        elapsed = false;
+        timerDeadline = -1;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setElapsed(long millies) {
+        timerMillis = millies;
+        timerWarn = false;
+        elapsed = true;
+        timerDeadline = -1;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setCountdownDeadline(long deadline, long warnMillis) {
+        timerDeadline = deadline;
+        this.warnMillis = warnMillis;
+        timerWarn = false;
+        elapsed = false;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setElapsedSince(long start) {
+        timerDeadline = start;
+        timerWarn = false;
+        elapsed = true;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setFreezeDeadline(int player, long deadline) {
+        freezeDeadlines[player] = deadline;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setFreeze(int player, long millies) {
+        freezeDeadlines[player] = millies > 0 ? System.currentTimeMillis() + millies : 0;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void setScore(int player, int score) {
+        scores[player] = score;
+        changed = true;
+    }
+
+    @Override
+    public synchronized void announceWinner(int[] players) {
+        winners = players.clone();
+        changed = true;
+    }
+
+    /**
+     * Draws the last frame, waits for all the frames to be written and stops the threads.
+     */
+    @Override
+    public void dispose() {
+        if (disposed) return;
+        disposed = true;
+        LockSupport.unpark(rendererThread);
+        try {
+            rendererThread.joinWithLog();
+            encoderThread.joinWithLog();
+        } catch (InterruptedException ignored) {}
+        logger.info("recorded " + framesWritten + " frames to " + directory + " (" + framesSkipped + " skipped while the encoder was behind).");
+    }
+}
@@ -4,10 +4,11 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -24,6 +25,24 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final WinnerPanel winnerPanel;
     private final Config config;
 
+    /**
+     * Table changes waiting to be shown as {kind, slot, card or player} (card is -1 for removal). The dealing
+     * animation shows a card change every config.tableDelayMillis, so the game threads never wait for it. Token changes
+     * are shown right away, but only after the card changes queued before them, so a token never shows on a card it
+     * was not placed on.
+     */
+    private static final int CARD = 0, PLACE_TOKEN = 1, REMOVE_TOKEN = 2, REMOVE_SLOT_TOKENS = 3, REMOVE_ALL_TOKENS = 4;
+    private final Queue<int[]> tableChanges = new ConcurrentLinkedQueue<>();
+    private final Timer dealTimer;
+    private final Runnable tokenChangesShower = this::showTokenChanges;
+
+    /**
+     * Updates the displayed countdown and freeze times every REFRESH_MILLIS while they change. The game threads only
+     * set their deadlines, so the timers cost no calls from the game threads between deadlines.
+     */
+    private static final int REFRESH_MILLIS = 30;
+    private final Timer clock;
+
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
     }
@@ -35,6 +54,8 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
         winnerPanel = new WinnerPanel();
+        dealTimer = new Timer((int) config.tableDelayMillis, e -> showNextCardChange());
+        clock = new Timer(REFRESH_MILLIS, e -> refreshClocks());
 
         setLayout(new GridBagLayout());
         GridBagConstraints gbc = new GridBagConstraints();
@@ -66,13 +87,26 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         addKeyListener(new InputManager(logger, config, players));
         addWindowListener(new WindowManager());
 
-        EventQueue.invokeLater(() -> setVisible(true));
+        EventQueue.invokeLater(() -> {
+            ThreadProfiler.register(Thread.currentThread(), "EDT");
+            setVisible(true);
+        });
     }
 
     private class TimerPanel extends JPanel {
 
         private final JLabel timerField;
 
+        /**
+         * What the timer shows (set by the game threads, shown by the event dispatch thread): a countdown to a
+         * deadline, the time elapsed since a start time (both while deadline >= 0), or a fixed time (-1 for none yet).
+         */
+        private long millies = -1;
+        private boolean warn;
+        private long warnMillis;
+        private boolean elapsed;
+        private volatile long deadline = -1; // written last, so the fields above are visible to the reader
+
         private String generateTime(long millies, boolean warn) {
             if (warn)
                 return format("Remaining Time: %.2f", (double) millies / 1000.0f);
@@ -91,12 +125,55 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
 
         private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            this.millies = millies;
+            this.warn = warn;
+            elapsed = false;
+            deadline = -1;
         }
 
         private void setElapsed(long millies) {
-            timerField.setText("Elapsed time: " + millies / 1000);
+            this.millies = millies;
+            warn = false;
+            elapsed = true;
+            deadline = -1;
+        }
+
+        private void setCountdownDeadline(long deadline, long warnMillis) {
+            this.warnMillis = warnMillis;
+            elapsed = false;
+            this.deadline = deadline;
+        }
+
+        private void setElapsedSince(long start) {
+            elapsed = true;
+            deadline = start;
+        }
+
+        /**
+         * Shows the time at the given moment. Called by the event dispatch thread.
+         *
+         * @param now - the current time.
+         * @return - true iff the shown time keeps changing.
+         */
+        private boolean refresh(long now) {
+            long deadline = this.deadline;
+            long millies;
+            boolean warn;
+            if (deadline < 0) {
+                if (this.millies < 0) return false;
+                millies = this.millies;
+                warn = this.warn;
+            } else if (elapsed) {
+                millies = now - deadline;
+                warn = false;
+            } else {
+                millies = Math.max(deadline - now, 0);
+                warn = millies <= warnMillis;
+            }
+            String text = elapsed ? "Elapsed time: " + millies / 1000 : generateTime(millies, warn);
+            if (!text.equals(timerField.getText())) timerField.setText(text);
+            timerField.setForeground(warn ? Color.RED : Color.BLACK);
+            return deadline >= 0 && (elapsed || now < deadline);
         }
     }
 
@@ -108,25 +185,13 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         private final boolean[][][] playerTokens;
         private final JLabel[][] tokenText;
 
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
-
         private GamePanel() {
 
             setPreferredSize(new Dimension(config.columns * config.cellWidth, config.rows * config.cellHeight));
 
             // init deck and load all pictures from png files
-            assert config.featureSize < 10; // otherwise there will be naming conflicts
-
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
+            deck = CardImages.loadDeck(config);
+            emptyCard = CardImages.loadEmptyCard();
 
             grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
@@ -216,10 +281,18 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         private final JLabel[][] playersTable;
 
+        /**
+         * The time each player's freeze ends (0 if the player was not frozen), and the remaining seconds shown (-1 if
+         * not frozen).
+         */
+        private final AtomicLongArray freezeDeadlines = new AtomicLongArray(config.players);
+        private final long[] shownFreeze = new long[config.players];
+
         private PlayersPanel() {
             this.setLayout(new GridLayout(2, config.players));
             this.setPreferredSize(new Dimension(config.players * config.playerCellWidth, config.rows * config.playerCellHeight));
             this.playersTable = new JLabel[2][config.players];
+            Arrays.fill(shownFreeze, -1);
             for (int i = 0; i < config.players; i++) {
                 this.playersTable[0][i] = new JLabel(config.playerNames[i]);
                 this.playersTable[0][i].setFont(new Font("Serif", Font.BOLD, config.fontSize));
@@ -235,14 +308,33 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void setFreeze(int player, long millies) {
-            if (millies > 0) {
-                this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
-                this.playersTable[0][player].setForeground(Color.RED);
-            } else {
-                this.playersTable[0][player].setText(config.playerNames[player]);
-                this.playersTable[0][player].setForeground(Color.BLACK);
+        private void setFreezeDeadline(int player, long deadline) {
+            freezeDeadlines.set(player, deadline);
+        }
+
+        /**
+         * Shows the remaining freeze times at the given moment. Called by the event dispatch thread.
+         *
+         * @param now - the current time.
+         * @return - true iff any player is still frozen.
+         */
+        private boolean refresh(long now) {
+            boolean frozen = false;
+            for (int player = 0; player < config.players; player++) {
+                long millies = freezeDeadlines.get(player) - now;
+                long seconds = millies > 0 ? millies / 1000 : -1;
+                frozen |= millies > 0;
+                if (seconds == shownFreeze[player]) continue;
+                shownFreeze[player] = seconds;
+                if (millies > 0) {
+                    this.playersTable[0][player].setText(config.playerNames[player] + " (" + seconds + ")");
+                    this.playersTable[0][player].setForeground(Color.RED);
+                } else {
+                    this.playersTable[0][player].setText(config.playerNames[player]);
+                    this.playersTable[0][player].setForeground(Color.BLACK);
+                }
             }
+            return frozen;
         }
 
         private void setScore(int player, int score) {
@@ -274,49 +366,130 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         }
     }
 
+    private void queueCardChange(int slot, int card) {
+        tableChanges.add(new int[]{CARD, slot, card});
+        EventQueue.invokeLater(() -> {
+            if (!dealTimer.isRunning()) dealTimer.start();
+        });
+    }
+
+    private void queueTokenChange(int kind, int slot, int player) {
+        tableChanges.add(new int[]{kind, slot, player});
+        EventQueue.invokeLater(tokenChangesShower);
+    }
+
+    private void showNextCardChange() {
+        showTokenChanges();
+        int[] change = tableChanges.poll();
+        if (change == null) {
+            dealTimer.stop();
+            return;
+        }
+        if (change[2] < 0) gamePanel.removeCard(change[1]);
+        else gamePanel.placeCard(change[1], change[2]);
+        showTokenChanges();
+    }
+
+    /**
+     * Shows the token changes at the head of the queue, up to the next card change (which waits for the deal timer).
+     */
+    private void showTokenChanges() {
+        for (int[] change; (change = tableChanges.peek()) != null && change[0] != CARD; ) {
+            tableChanges.poll();
+            switch (change[0]) {
+                case PLACE_TOKEN: gamePanel.placeToken(change[2], change[1]); break;
+                case REMOVE_TOKEN: gamePanel.removeToken(change[2], change[1]); break;
+                case REMOVE_SLOT_TOKENS: gamePanel.removeTokens(change[1]); break;
+                default: gamePanel.removeTokens();
+            }
+        }
+    }
+
+    /**
+     * Refreshes the displayed times, and stops refreshing them once they stopped changing.
+     */
+    private void refreshClocks() {
+        long now = System.currentTimeMillis();
+        if (timerPanel.refresh(now) | playersPanel.refresh(now)) return;
+        clock.stop();
+        if (timerPanel.refresh(now) | playersPanel.refresh(now)) clock.start(); // a deadline was set meanwhile
+    }
+
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        queueCardChange(slot, card);
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        queueCardChange(slot, -1);
+    }
+
+    @Override
+    public void placeCards(int[] cards, int[] slots) {
+        for (int i = 0; i < cards.length; i++)
+            queueCardChange(slots[i], cards[i]);
+    }
+
+    @Override
+    public void removeCards(int[] slots) {
+        for (int slot : slots)
+            queueCardChange(slot, -1);
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        queueTokenChange(PLACE_TOKEN, slot, player);
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        queueTokenChange(REMOVE_ALL_TOKENS, -1, -1);
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        queueTokenChange(REMOVE_SLOT_TOKENS, slot, -1);
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        queueTokenChange(REMOVE_TOKEN, slot, player);
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
         timerPanel.setCountdown(millies, warn);
+        clock.start();
     }
 
     @Override
     public void setElapsed(long millies) {
         timerPanel.setElapsed(millies);
+        clock.start();
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        setFreezeDeadline(player, millies > 0 ? System.currentTimeMillis() + millies : 0);
+    }
+
+    @Override
+    public void setCountdownDeadline(long deadline, long warnMillis) {
+        timerPanel.setCountdownDeadline(deadline, warnMillis);
+        clock.start();
+    }
+
+    @Override
+    public void setElapsedSince(long start) {
+        timerPanel.setElapsedSince(start);
+        clock.start();
+    }
+
+    @Override
+    public void setFreezeDeadline(int player, long deadline) {
+        playersPanel.setFreezeDeadline(player, deadline);
+        clock.start();
     }
 
     @Override
@@ -333,6 +506,7 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
     @Override
     public void dispose() {
+        clock.stop();
         super.dispose();
     }
 }
@@ -31,6 +31,22 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks a batch of candidate sets at once.
+     *
+     * @param candidates - the card ids of the candidates, config.featureSize consecutive ids per candidate.
+     * @return - a bitmask of the legal candidates: bit i % 64 of word i / 64 is set iff candidate i is a legal set.
+     */
+    long[] testSets(int[] candidates);
+
+    /**
+     * Finds the card that completes the given cards to a legal set.
+     *
+     * @param cards - an array of config.featureSize - 1 card ids.
+     * @return - the id of the completing card, or -1 if there is none (or it is not unique).
+     */
+    int completeSet(int[] cards);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +56,15 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Finds and returns up to count sets in the given array of cards.
+     *
+     * @param deck  - an array of card ids.
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    List<int[]> findSets(int[] deck, int count);
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
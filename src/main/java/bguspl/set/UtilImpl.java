@@ -13,8 +13,42 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The features of each card packed into a long: feature i takes a lane of config.featureSize bits, in which the
+     * bit of the card's value is set. The features of a group of cards are the OR of their packed features, and a
+     * feature is legal iff its lane has a single bit set (sameSame) or all of its bits set (butDifferent).
+     * Null if the lanes do not fit in a long.
+     */
+    private final long[] packedFeatures;
+
+    /**
+     * The lowest bit of every lane.
+     */
+    private final long laneLowBits;
+
+    /**
+     * The number of candidate sets checked together by findSets.
+     */
+    private static final int BATCH = 64;
+
     public UtilImpl(Config config) {
         this.config = config;
+
+        long lanes = 0;
+        long[] packed = null;
+        if (config.featureCount * config.featureSize <= Long.SIZE) {
+            packed = new long[config.deckSize];
+            int[] features = new int[config.featureCount];
+            for (int card = 0; card < config.deckSize; card++) {
+                cardToFeatures(card, features);
+                for (int i = 0; i < config.featureCount; i++)
+                    packed[card] |= 1L << (i * config.featureSize + features[i]);
+            }
+            for (int i = 0; i < config.featureCount; i++)
+                lanes |= 1L << (i * config.featureSize);
+        }
+        this.packedFeatures = packed;
+        this.laneLowBits = lanes;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,6 +74,13 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
+        if (packedFeatures != null && cards.length == config.featureSize) {
+            long seen = 0;
+            for (int card : cards)
+                seen |= packedFeatures[card];
+            return legal(seen);
+        }
+
         int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
@@ -64,21 +105,92 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    @Override
+    public long[] testSets(int[] candidates) {
+        int size = config.featureSize;
+        int n = candidates.length / size;
+        long[] legal = new long[(n + 63) >>> 6];
+
+        if (packedFeatures == null) { // the lanes do not fit in a long, check the candidates one by one
+            int[] cards = new int[size];
+            for (int s = 0; s < n; s++) {
+                System.arraycopy(candidates, s * size, cards, 0, size);
+                if (testSet(cards)) legal[s >>> 6] |= 1L << s;
+            }
+        } else if (size == 3) { // branch free: a feature is illegal iff exactly 2 of the 3 bits of its lane are set
+            for (int s = 0, c = 0; s < n; s++, c += 3) {
+                long x = packedFeatures[candidates[c]] | packedFeatures[candidates[c + 1]] | packedFeatures[candidates[c + 2]];
+                long y = x >>> 1, z = x >>> 2;
+                long twoBits = (x & y & ~z | x & ~y & z | ~x & y & z) & laneLowBits;
+                legal[s >>> 6] |= (twoBits - 1 >>> 63) << s; // the lowest bits of the lanes are below bit 63
+            }
+        } else {
+            for (int s = 0, c = 0; s < n; s++) {
+                long seen = 0;
+                for (int j = 0; j < size; j++)
+                    seen |= packedFeatures[candidates[c++]];
+                if (legal(seen)) legal[s >>> 6] |= 1L << s;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * @param seen - the OR of the packed features of config.featureSize cards.
+     * @return - true iff every lane has a single bit or all of its bits set.
+     */
+    private boolean legal(long seen) {
+        int size = config.featureSize;
+        long lane = size == Long.SIZE ? -1L : (1L << size) - 1;
+        for (int i = 0; i < config.featureCount; i++) {
+            int bits = Long.bitCount(seen >>> (i * size) & lane);
+            if (bits != 1 && bits != size) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int completeSet(int[] cards) {
+        int size = config.featureSize;
+        if (cards.length != size - 1 || size < 3) return -1; // with less than 3 choices the completion is not unique
+
+        int card = 0;
+        for (int i = 0, weight = 1; i < config.featureCount; ++i, weight *= size) {
+            int seen = 0; // a bitmask of the values of the i-th (least significant) feature
+            for (int other : cards)
+                seen |= 1 << (other / weight % size);
+            int value;
+            if (Integer.bitCount(seen) == 1) value = Integer.numberOfTrailingZeros(seen); // sameSame
+            else if (Integer.bitCount(seen) == cards.length) value = Integer.numberOfTrailingZeros(~seen); // butDifferent
+            else return -1;
+            card += value * weight;
+        }
+        return card;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        return findSets(deck.stream().mapToInt(Integer::intValue).toArray(), count);
+    }
+
+    @Override
+    public List<int[]> findSets(int[] deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
-        int n = deck.size();
+        int n = deck.length;
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] batch = new int[BATCH * r]; // the candidates are checked BATCH at a time
+        int batched = 0;
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+        while (combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                batch[batched * r + i] = deck[combination[i]];
+            if (++batched == BATCH) {
+                if (addSets(batch, batched, sets, count)) return sets;
+                batched = 0;
             }
 
             // generate next combination in lexicographic order
@@ -87,9 +199,30 @@ public class UtilImpl implements Util {
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
+        addSets(batch, batched, sets, count);
         return sets;
     }
 
+    /**
+     * Checks a batch of candidates and adds the legal sets among them (sorted) to a list, up to count sets.
+     *
+     * @return - true iff the list is full.
+     */
+    private boolean addSets(int[] batch, int batched, List<int[]> sets, int count) {
+        int r = config.featureSize;
+        long[] legal = testSets(batched * r == batch.length ? batch : Arrays.copyOf(batch, batched * r));
+        for (int word = 0; word < legal.length; word++) {
+            for (long bits = legal[word]; bits != 0; bits &= bits - 1) {
+                int s = word * 64 + Long.numberOfTrailingZeros(bits);
+                int[] cards = Arrays.copyOfRange(batch, s * r, s * r + r);
+                Arrays.sort(cards);
+                sets.add(cards);
+                if (sets.size() >= count) return true;
+            }
+        }
+        return false;
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
         long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
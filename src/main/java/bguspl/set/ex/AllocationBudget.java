@@ -0,0 +1,99 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * This class tracks the memory allocated by a hot path operation of a single thread (e.g. placing a token) and logs
+ * the operations that allocate more than their budget, so the steady state of the game stays free of garbage.
+ * The allocations are measured with the JVM's per-thread allocation counter, which costs two reads per operation.
+ */
+public class AllocationBudget {
+
+    /**
+     * The JVM's thread statistics (null if the JVM cannot measure per-thread allocations).
+     */
+    private static final com.sun.management.ThreadMXBean threads = threads();
+
+    /**
+     * The number of operations that are not tracked while the code warms up (class loading, compilation).
+     */
+    private static final int WARMUP_OPERATIONS = 100;
+
+    /**
+     * The maximal number of operations over the budget that are logged one by one.
+     */
+    private static final int LOGGED_VIOLATIONS = 10;
+
+    private final Env env;
+    private final String operation;
+    private final long budgetBytes;
+    private final boolean enabled;
+
+    /**
+     * Statistics of the tracked operations.
+     */
+    private long warmup;
+    private long operations;
+    private long totalBytes;
+    private long maxBytes;
+    private long violations;
+
+    /**
+     * @param env         - the game environment object.
+     * @param operation   - the name of the operation (for the log).
+     * @param budgetBytes - the maximal number of bytes an operation may allocate (negative for not tracking).
+     */
+    public AllocationBudget(Env env, String operation, long budgetBytes) {
+        this.env = env;
+        this.operation = operation;
+        this.budgetBytes = budgetBytes;
+        this.enabled = budgetBytes >= 0 && threads != null;
+    }
+
+    /**
+     * Called when the operation starts, by the thread performing it.
+     *
+     * @return - the number of bytes the thread allocated so far (0 if allocations are not tracked).
+     */
+    public long start() {
+        return enabled ? threads.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * Called when the operation ends, by the thread performing it.
+     *
+     * @param start - the value start returned.
+     */
+    public void end(long start) {
+        if (!enabled) return;
+        long bytes = threads.getCurrentThreadAllocatedBytes() - start;
+        if (warmup < WARMUP_OPERATIONS) {
+            warmup++;
+            return;
+        }
+        operations++;
+        totalBytes += bytes;
+        maxBytes = Math.max(maxBytes, bytes);
+        if (bytes > budgetBytes && violations++ < LOGGED_VIOLATIONS)
+            env.logger.severe(operation + " allocated " + bytes + " bytes, over its budget of " + budgetBytes + " bytes.");
+    }
+
+    /**
+     * Logs the statistics of the operation.
+     */
+    public void report() {
+        if (!enabled || operations == 0) return;
+        env.logger.info(operation + " allocated " + totalBytes / operations + " bytes on average (max " + maxBytes
+                + ") in " + operations + " operations, " + violations + " over the budget of " + budgetBytes + " bytes.");
+    }
+
+    private static com.sun.management.ThreadMXBean threads() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) return null;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+}
@@ -0,0 +1,208 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class holds a snapshot of a running game, for resuming it after the process dies.
+ * The snapshot is encoded on the dealer thread, the only thread that changes the table, between two of its table
+ * operations (so it is consistent without locking), into a preallocated buffer that is then written to the disk.
+ *
+ * Layout: magic, version (ints), config fingerprint (long), deck size, table size, players (ints), played time and
+ * elapsed turn time (longs), reshuffles, penalties (ints), the deck (count and cards, top to bottom), the card in
+ * each slot (-1 if none), and for each player its score, remaining freeze time and tokens (count and slots).
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x53455443; // "SETC"
+    private static final int VERSION = 1;
+
+    /**
+     * The time the game was played before the snapshot, and the time that passed since the turn started.
+     */
+    final long playedMillis;
+    final long turnElapsedMillis;
+
+    final int reshuffles;
+    final int penalties;
+
+    /**
+     * The cards in the deck (top to bottom), and the card in each slot (-1 if none).
+     */
+    final int[] deck;
+    final int[] slotToCard;
+
+    /**
+     * The score, remaining freeze time and token slots of each player.
+     */
+    final int[] scores;
+    final long[] freezeMillis;
+    final int[][] tokens;
+
+    private Checkpoint(long playedMillis, long turnElapsedMillis, int reshuffles, int penalties, int[] deck,
+                       int[] slotToCard, int[] scores, long[] freezeMillis, int[][] tokens) {
+        this.playedMillis = playedMillis;
+        this.turnElapsedMillis = turnElapsedMillis;
+        this.reshuffles = reshuffles;
+        this.penalties = penalties;
+        this.deck = deck;
+        this.slotToCard = slotToCard;
+        this.scores = scores;
+        this.freezeMillis = freezeMillis;
+        this.tokens = tokens;
+    }
+
+    /**
+     * @param config - the game configuration.
+     * @return - a buffer large enough for a snapshot of a game with the configuration.
+     */
+    static ByteBuffer allocate(Config config) {
+        int bytes = 4 * 2 + 8 + 4 * 3 + 8 * 2 + 4 * 2
+                + 4 + 4 * config.deckSize
+                + 4 * config.tableSize
+                + config.players * (4 + 8 + 4 + 4 * config.featureSize);
+        return ByteBuffer.allocate(bytes);
+    }
+
+    /**
+     * Encodes a snapshot of a game into a buffer. Must be called by the dealer thread.
+     *
+     * @param buffer            - the buffer to encode into (cleared first).
+     * @param env               - the game environment object.
+     * @param playedMillis      - the time the game was played so far.
+     * @param turnElapsedMillis - the time that passed since the turn started.
+     * @param reshuffles        - the number of reshuffles so far.
+     * @param penalties         - the number of penalties so far.
+     * @param deck              - the dealer's deck.
+     * @param table             - the table.
+     * @param players           - the players.
+     *
+     * @post - the buffer is ready to be written.
+     */
+    static void encode(ByteBuffer buffer, Env env, long playedMillis, long turnElapsedMillis, int reshuffles, int penalties,
+                       Deck deck, Table table, Player[] players) {
+        buffer.clear();
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(env.config.fingerprint())
+                .putInt(env.config.deckSize).putInt(env.config.tableSize).putInt(players.length)
+                .putLong(playedMillis).putLong(turnElapsedMillis).putInt(reshuffles).putInt(penalties);
+
+        int[] cards = deck.toArray();
+        buffer.putInt(cards.length);
+        for (int card : cards)
+            buffer.putInt(card);
+        for (Integer card : table.slotToCard)
+            buffer.putInt(card == null ? -1 : card);
+
+        for (Player player : players) {
+            buffer.putInt(player.score()).putLong(Math.max(player.freezeRemainingMillis(), 0));
+            int tokens = 0;
+            for (int slot = 0; slot < env.config.tableSize; slot++)
+                if (table.hasToken(player.id, slot)) tokens++;
+            buffer.putInt(tokens);
+            for (int slot = 0; slot < env.config.tableSize; slot++)
+                if (table.hasToken(player.id, slot)) buffer.putInt(slot);
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Writes an encoded snapshot to a file. The file is replaced atomically, so a crash while writing leaves the
+     * previous snapshot intact.
+     *
+     * @param buffer - the encoded snapshot.
+     * @param file   - the checkpoint file.
+     * @throws IOException - if the file cannot be written.
+     */
+    static void write(ByteBuffer buffer, Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot of a game.
+     *
+     * @param file   - the checkpoint file.
+     * @param config - the configuration of the game to resume.
+     * @return - the snapshot.
+     * @throws IOException - if the file cannot be read, was written by a game with a different configuration, or holds
+     *                       cards, slots or counts out of their ranges.
+     */
+    public static Checkpoint read(Path file, Config config) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                throw new IOException(file + " is not a checkpoint file");
+            if (buffer.getLong() != config.fingerprint() || buffer.getInt() != config.deckSize
+                    || buffer.getInt() != config.tableSize || buffer.getInt() != config.players)
+                throw new IOException(file + " was written by a game with a different configuration");
+
+            long playedMillis = buffer.getLong();
+            long turnElapsedMillis = buffer.getLong();
+            int reshuffles = buffer.getInt();
+            int penalties = buffer.getInt();
+
+            // every card is in the deck or on the table at most once, and the tokens are on cards
+            boolean[] dealt = new boolean[config.deckSize];
+            int[] deck = new int[checked(buffer.getInt(), 0, config.deckSize + 1, "deck size", file)];
+            for (int i = 0; i < deck.length; i++)
+                deck[i] = card(buffer.getInt(), dealt, file);
+            int[] slotToCard = new int[config.tableSize];
+            for (int slot = 0; slot < slotToCard.length; slot++) {
+                int card = buffer.getInt();
+                slotToCard[slot] = card == -1 ? -1 : card(card, dealt, file);
+            }
+
+            int[] scores = new int[config.players];
+            long[] freezeMillis = new long[config.players];
+            int[][] tokens = new int[config.players][];
+            for (int player = 0; player < config.players; player++) {
+                scores[player] = checked(buffer.getInt(), 0, Integer.MAX_VALUE, "score", file);
+                freezeMillis[player] = buffer.getLong();
+                tokens[player] = new int[checked(buffer.getInt(), 0, config.featureSize + 1, "token count", file)];
+                for (int i = 0; i < tokens[player].length; i++) {
+                    int slot = checked(buffer.getInt(), 0, config.tableSize, "token slot", file);
+                    for (int j = 0; j < i; j++)
+                        if (tokens[player][j] == slot) throw new IOException(file + " has two tokens of a player in slot " + slot);
+                    if (slotToCard[slot] < 0) throw new IOException(file + " has a token in the empty slot " + slot);
+                    tokens[player][i] = slot;
+                }
+            }
+            return new Checkpoint(playedMillis, turnElapsedMillis, reshuffles, penalties, deck, slotToCard, scores, freezeMillis, tokens);
+        } catch (RuntimeException e) { // a truncated or corrupted file
+            throw new IOException(file + " is not a valid checkpoint file", e);
+        }
+    }
+
+    /**
+     * @return - the value read from the file.
+     * @throws IOException - if the value is not in [min, max).
+     */
+    private static int checked(int value, int min, int max, String name, Path file) throws IOException {
+        if (value < min || value >= max) throw new IOException(file + " has an invalid " + name + ": " + value);
+        return value;
+    }
+
+    /**
+     * @param dealt - the cards read so far, the card is added to them.
+     * @return - the card read from the file.
+     * @throws IOException - if the card is not in the deck, or it was read before.
+     */
+    private static int card(int card, boolean[] dealt, Path file) throws IOException {
+        checked(card, 0, dealt.length, "card", file);
+        if (dealt[card]) throw new IOException(file + " has card " + card + " twice");
+        dealt[card] = true;
+        return card;
+    }
+}
@@ -1,15 +1,23 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
-import java.util.Queue;
-import java.util.ArrayDeque;
-import java.util.Collections;
+import bguspl.set.ThreadProfiler;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * This class manages the dealer's threads and data
+ * This class manages the dealer's threads and data. The dealer thread is the game core: it is the only thread that
+ * changes the table. The players' key presses are submitted to it through their input queues, and it toggles the
+ * tokens, checks the sets and places the cards one after the other, without locking. The other threads read the table
+ * through its snapshots.
  */
 public class Dealer implements Runnable {
 
@@ -23,16 +31,67 @@ public class Dealer implements Runnable {
      */
     private final Table table;
     private final Player[] players;
-    volatile public ArrayDeque<Integer> checkIfSet; // player that want the dealer to check its set will push its id to here.
     private long timeLoopStarted;
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The dealer thread, unparked when a key is pressed or a player asks for something.
      */
-    private final List<Integer> deck;
-    private Queue<Integer> setAttempt;
-    private boolean correctSet;
-    // private ArrayDeque<Thread> playersThreads;
+    private volatile Thread dealerThread;
+
+    /**
+     * The slots of each player's tokens: tokens[id][0..tokenCounts[id]).
+     */
+    private final int[][] tokens;
+    private final int[] tokenCounts;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;
+
+    /**
+     * The source of randomness for shuffling the deck.
+     */
+    private final SplittableRandom random;
+
+    /**
+     * The players that completed a set while their key presses were applied, adjudicated together.
+     */
+    private final List<Player> claims;
+
+    /**
+     * The time of the key press that completed each player's claimed set.
+     */
+    private final long[] claimPressTimes;
+
+    /**
+     * The order claims are adjudicated in: the time their sets were completed (the sort is stable, so ties are kept
+     * in the order the key presses were applied).
+     */
+    private final Comparator<Player> byPressTime;
+
+    /**
+     * The verdict of each claim, the slots taken by the accepted sets, and the cards of a claim, reused by every
+     * claims check.
+     */
+    private final Verdict[] verdicts;
+    private final boolean[] taken;
+    private final int[] claimCards;
+
+    /**
+     * The allocation budgets of toggling a token, of the claims check and of the table refill.
+     */
+    private final AllocationBudget tokenBudget;
+    private final AllocationBudget claimBudget;
+    private final AllocationBudget cardsBudget;
+
+    /**
+     * Statistics of the claim adjudication: the number of claims checked, of passes they were checked in, and of sets
+     * the dealer took the players' verification of.
+     */
+    private long claimsChecked;
+    private long claimPasses;
+    private long claimsVerified;
 
 
     /**
@@ -46,20 +105,72 @@ public class Dealer implements Runnable {
      */
     private long reshuffleTime = Long.MAX_VALUE;
 
-    private int playerToCheckID;
+    /**
+     * The maximal number of times the smart refill swaps table cards back into the deck in a single refill.
+     */
+    static final int MAX_PARTIAL_RESHUFFLES = 3;
+
+    /**
+     * The cumulative standings the results of the game are added to (null if there is no leaderboard).
+     */
+    private final Leaderboard leaderboard;
+
+    /**
+     * The store the result of the game is added to (null if the results are not stored).
+     */
+    private final GameResults results;
+
+    /**
+     * Statistics of the game for its stored result.
+     */
+    private int reshuffles;
+    private int penalties;
+
+    /**
+     * The time the game started (moved back by the time it was played before it was resumed).
+     */
+    private long gameStartTime;
+    private long playedMillis;
+
+    /**
+     * The time that passed in the turn the game was resumed in (-1 if the game was not resumed).
+     */
+    private long resumedTurnElapsedMillis = -1;
+
+    /**
+     * The buffer snapshots of the game are encoded into (null if the game is not checkpointed), and the time the
+     * next one is due.
+     */
+    private final ByteBuffer checkpointBuffer;
+    private long nextCheckpointTime;
 
     public Dealer(Env env, Table table, Player[] players) {
+        this(env, table, players, null, null);
+    }
+
+    public Dealer(Env env, Table table, Player[] players, Leaderboard leaderboard, GameResults results) {
+        this.leaderboard = leaderboard;
+        this.results = results;
+        this.checkpointBuffer = env.config.checkpointFile.isEmpty() || env.config.checkpointMillis <= 0 ? null : Checkpoint.allocate(env.config);
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        this.checkIfSet = new ArrayDeque<Integer>();
-        this.setAttempt = new ArrayDeque<Integer>();
-        this.correctSet = false;
+        deck = new Deck(env.config.deckSize);
+        random = env.config.random("dealer");
+        this.tokens = new int[players.length][env.config.featureSize];
+        this.tokenCounts = new int[players.length];
+        this.claims = new ArrayList<>(players.length); // a player has at most one pending claim, so it never grows
+        this.claimPressTimes = new long[players.length];
+        this.byPressTime = Comparator.comparingLong(player -> claimPressTimes[player.id]);
+        this.verdicts = new Verdict[players.length]; // a player has at most one pending claim
+        this.taken = new boolean[env.config.tableSize];
+        this.claimCards = new int[env.config.featureSize];
+        this.tokenBudget = new AllocationBudget(env, "dealer token toggle", env.config.tokenAllocationBudget);
+        this.claimBudget = new AllocationBudget(env, "dealer claims check", env.config.claimAllocationBudget);
+        this.cardsBudget = new AllocationBudget(env, "dealer table refill", env.config.cardsAllocationBudget);
         this.terminate = false;
         this.reshuffleTime = env.config.turnTimeoutMillis;
-        this.playerToCheckID = -1;
-        Collections.shuffle(deck);
+        deck.shuffle(random);
     }
 
     /**
@@ -68,21 +179,47 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-        
-        for (Player player : players) {
-            Thread playersThread = new Thread(()-> player.run()); 
-            playersThread.start();
+        ThreadProfiler.register(Thread.currentThread(), "dealer");
+        dealerThread = Thread.currentThread();
+
+        Thread[] playersThreads = new Thread[players.length];
+        for (int i = 0; i < players.length; i++) {
+            Player player = players[i];
+            player.playerActions.setConsumer(dealerThread);
+            playersThreads[i] = new Thread(player, "player-" + (player.id + 1));
+            ThreadProfiler.register(playersThreads[i], playersThreads[i].getName());
+            playersThreads[i].start();
         }
 
+        gameStartTime = System.currentTimeMillis() - playedMillis;
+        nextCheckpointTime = System.currentTimeMillis() + env.config.checkpointMillis;
+        boolean dealt = false;
         while (!shouldFinish()) {
+            if (dealt) reshuffles++;
+            dealt = true;
             placeCardsOnTable();
             timerLoop();
+            checkForSets(true); // the sets claimed when the turn ended
             updateTimerDisplay(true);
             removeAllCardsFromTable();
         }
         announceWinners();
+        storeResult(System.currentTimeMillis() - gameStartTime);
+        if (!terminate && checkpointBuffer != null) { // the game is over, there is nothing to resume
+            try { Files.deleteIfExists(Paths.get(env.config.checkpointFile)); } catch (IOException ignored) {}
+        }
         terminate();
+        for (int i = playersThreads.length - 1; i >= 0; i--) {
+            try { playersThreads[i].join(); } catch (InterruptedException ignored) {}
+        }
+        if (claimPasses > 0)
+            env.logger.info("dealer checked " + claimsChecked + " claims in " + claimPasses + " passes, " + claimsVerified
+                    + " sets verified by the players.");
+        tokenBudget.report();
+        claimBudget.report();
+        cardsBudget.report();
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        ThreadProfiler.exit();
     }
 
     /**
@@ -90,14 +227,86 @@ public class Dealer implements Runnable {
      */
     private void timerLoop() {
         this.timeLoopStarted = System.currentTimeMillis();
-        while (!terminate && System.currentTimeMillis() < timeLoopStarted + reshuffleTime) { 
-            sleepUntilWokenOrTimeout(); // rest or check set
-            checkForSet();
-            if (correctSet) timeLoopStarted = System.currentTimeMillis();
-            updateTimerDisplay(correctSet); 
-            removeCardsFromTable();
-            placeCardsOnTable();
+        if (resumedTurnElapsedMillis >= 0) { // continue the turn the game was checkpointed in
+            timeLoopStarted -= resumedTurnElapsedMillis;
+            resumedTurnElapsedMillis = -1;
+        }
+        updateTimerDisplay(false);
+        while (!terminate && !shouldReshuffle()) {
+            sleepUntilWokenOrTimeout(); // rest or apply key presses
+            applyKeyPresses();
+            boolean setFound = checkForSets(false);
+            if (setFound) {
+                timeLoopStarted = System.currentTimeMillis();
+                updateTimerDisplay(false);
+            }
+            placeCardsOnTable(); // a single refill for all the sets found
+            checkpoint();
+        }
+    }
+
+    /**
+     * Restores the state of a checkpointed game. Must be called before the dealer thread starts.
+     *
+     * @param checkpoint - the snapshot of the game.
+     */
+    public void restore(Checkpoint checkpoint) {
+        deck.reset(checkpoint.deck);
+        int placed = 0;
+        for (int card : checkpoint.slotToCard)
+            if (card >= 0) placed++;
+        int[] cards = new int[placed];
+        int[] slots = new int[placed];
+        for (int slot = 0, i = 0; slot < checkpoint.slotToCard.length; slot++) {
+            if (checkpoint.slotToCard[slot] < 0) continue;
+            cards[i] = checkpoint.slotToCard[slot];
+            slots[i++] = slot;
+        }
+        table.placeCards(cards, slots);
+        for (Player player : players) {
+            player.restore(checkpoint.scores[player.id], checkpoint.freezeMillis[player.id]);
+            for (int slot : checkpoint.tokens[player.id]) {
+                tokens[player.id][tokenCounts[player.id]++] = slot;
+                table.placeToken(player.id, slot);
+            }
+        }
+
+        playedMillis = checkpoint.playedMillis;
+        resumedTurnElapsedMillis = checkpoint.turnElapsedMillis;
+        reshuffles = checkpoint.reshuffles;
+        penalties = checkpoint.penalties;
+    }
+
+    /**
+     * Writes a snapshot of the game to the checkpoint file if one is due.
+     */
+    private void checkpoint() {
+        if (checkpointBuffer == null || System.currentTimeMillis() < nextCheckpointTime) return;
+        for (Player player : players)
+            if (player.awaitingAnswer()) return; // the player did not handle the answer to its set yet, try again later
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+        Checkpoint.encode(checkpointBuffer, env, now - gameStartTime, now - timeLoopStarted, reshuffles, penalties, deck, table, players);
+        long encoded = System.nanoTime();
+        try {
+            Checkpoint.write(checkpointBuffer, Paths.get(env.config.checkpointFile));
+            env.logger.info("checkpoint encoded in " + (encoded - start) / 1000 + "us and written in " + (System.nanoTime() - encoded) / 1000 + "us.");
+        } catch (IOException e) {
+            env.logger.severe("error writing checkpoint: " + e.getMessage());
         }
+        nextCheckpointTime = System.currentTimeMillis() + env.config.checkpointMillis;
+    }
+
+    /**
+     * Check if the cards on the table should be reshuffled into the deck: when the turn times out, or in the
+     * timer-less modes (TurnTimeoutSeconds 0 or -1) as soon as there are no sets left on the table.
+     *
+     * @return true iff the dealer should reshuffle.
+     */
+    private boolean shouldReshuffle() {
+        if (env.config.turnTimeoutMillis > 0)
+            return System.currentTimeMillis() >= timeLoopStarted + reshuffleTime;
+        return table.countSets() == 0;
     }
 
     /**
@@ -107,6 +316,14 @@ public class Dealer implements Runnable {
         for (int i = players.length - 1; i >= 0; i--) 
             players[i].terminate();
         terminate = true; 
+        wakeUp();
+    }
+
+    /**
+     * Wakes the dealer up to handle a player's request.
+     */
+    public void wakeUp() {
+        LockSupport.unpark(dealerThread);
     }
 
     /**
@@ -115,96 +332,322 @@ public class Dealer implements Runnable {
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || env.util.findSets(deck.toArray(), 1).size() == 0;
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
-     */
-    private void removeCardsFromTable() {
-        synchronized(table){
-        if (correctSet){
-                while (!setAttempt.isEmpty()) {
-                    int slot = setAttempt.poll();
-                    table.removeCard(slot);
-                    for (Player player : players){
-                        synchronized (player.queuePlayerTokens){
-                            if(player.id != playerToCheckID && player.queuePlayerTokens.remove(slot)){
-                                checkIfSet.remove(player.id);
-                                player.waitForDealreAnswer = true;
-                            }
-                        }
-                    }
-                }
-            }
-            this.correctSet = false;
+     * Check if any cards can be removed from the deck and placed on the table.
+     */
+    void placeCardsOnTable() {
+        long allocated = cardsBudget.start();
+        boolean placed = fillTable();
+        // smart refill: if the deck could not complete enough sets, swap some table cards back into the deck
+        for (int i = 0; i < MAX_PARTIAL_RESHUFFLES && refillNeeded(0); i++) {
+            if (!returnCardsToDeck()) break;
+            deck.shuffle(random);
+            placed |= fillTable();
         }
+        if (placed && env.config.hints) table.hints();
+        if (placed) cardsBudget.end(allocated);
     }
 
     /**
-     * Check if any cards can be removed from the deck and placed on the table.
+     * Places cards from the deck in the empty slots, all in a single table operation. In smart refill mode, prefers
+     * cards that complete a set.
+     *
+     * @return - true iff any card was placed.
      */
-    private void placeCardsOnTable() {
-        synchronized(table){
-        int tableSize = env.config.tableSize;
-        int size = Math.min(deck.size(), tableSize);
+    private boolean fillTable() {
         int numOfCardsOnTable = table.countCards();
-            for (int i = 0 ; i < size &&  numOfCardsOnTable < tableSize ; i++){
-                int avaliableSlot = table.avaliableSlot(); // because of the condition in the loop - it will never be -1.
-                table.placeCard(deck.remove(0), avaliableSlot);
-                numOfCardsOnTable++;
+        int size = Math.min(deck.size(), env.config.tableSize - numOfCardsOnTable);
+        if (size <= 0) return false;
+
+        int[] cards = new int[size];
+        int[] slots = new int[size];
+        int[] onTable = Arrays.copyOf(tableCards(), numOfCardsOnTable + size); // the table after placing the cards
+        int completed = 0; // the sets completed by the cards drawn so far
+        for (int i = 0, slot = table.nextEmptySlot(0); i < size; i++, slot = table.nextEmptySlot(slot + 1)) { // the table has at least size empty slots
+            int card = refillNeeded(completed) ? drawCompletingCard(onTable, numOfCardsOnTable) : -1;
+            if (card >= 0) completed++;
+            cards[i] = card >= 0 ? card : deck.draw();
+            slots[i] = slot;
+            onTable[numOfCardsOnTable++] = cards[i];
+        }
+        table.placeCards(cards, slots);
+        return true;
+    }
+
+    /**
+     * The sets on the table are kept by the table, so they are not searched for. Cards that are drawn but not placed
+     * yet are not part of them: a card drawn to complete a set adds at least the set it completes, and the sets the
+     * other drawn cards happen to form are counted once they are placed.
+     *
+     * @param pendingSets - the sets completed by the cards drawn and not placed yet.
+     * @return - true iff smart refill is on, and the table has less sets than required while the deck has cards.
+     */
+    private boolean refillNeeded(int pendingSets) {
+        int minSets = env.config.refillMinSets;
+        return minSets > 0 && !deck.isEmpty() && table.countSets() + pendingSets < minSets;
+    }
+
+    /**
+     * Looks for a card in the deck that completes a set with cards on the table, and draws it.
+     *
+     * @param cards - the cards on the table are cards[0..n).
+     * @return - the card drawn, or -1 if the deck has no such card.
+     */
+    private int drawCompletingCard(int[] cards, int n) {
+        int r = env.config.featureSize - 1;
+        int[] combination = new int[r];
+        int[] others = new int[r];
+
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+
+        while (r > 0 && combination[r - 1] < n) {
+            for (int i = 0; i < r; ++i)
+                others[i] = cards[combination[i]];
+            int card = env.util.completeSet(others);
+            if (card >= 0 && deck.contains(card)) {
+                deck.remove(card);
+                return card;
             }
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
+        return -1;
     }
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Returns up to featureSize table cards that are not part of any set (and have no tokens on them) to the deck.
+     *
+     * @return - true iff any card was returned.
      */
-    private synchronized void sleepUntilWokenOrTimeout() {
-        try {
-            // Wait for either a notification or for one second
-            wait(1000);
-        } catch (InterruptedException e) {}
+    private boolean returnCardsToDeck() {
+        boolean[] inSet = new boolean[env.config.deckSize];
+        for (int[] set : table.currentSets())
+            for (int card : set)
+                inSet[card] = true;
+
+        int[] slots = new int[env.config.featureSize];
+        int returned = 0;
+        for (int slot = table.nextCardSlot(0); slot >= 0 && returned < slots.length; slot = table.nextCardSlot(slot + 1)) {
+            int card = table.slotToCard[slot];
+            if (!inSet[card] && !hasTokens(slot)) {
+                deck.add(card);
+                slots[returned++] = slot;
+            }
+        }
+        table.removeCards(Arrays.copyOf(slots, returned));
+        return returned > 0;
+    }
+
+    private boolean hasTokens(int slot) {
+        for (Player player : players)
+            if (table.hasToken(player.id, slot)) return true;
+        return false;
+    }
 
+    /**
+     * @return - the cards that are currently on the table.
+     */
+    private int[] tableCards() {
+        int[] cards = new int[table.countCards()];
+        int i = 0;
+        for (int slot = table.nextCardSlot(0); slot >= 0; slot = table.nextCardSlot(slot + 1))
+            cards[i++] = table.slotToCard[slot];
+        return cards;
+    }
 
+    /**
+     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     */
+    private void sleepUntilWokenOrTimeout() {
+        long timeout = 0; // the ui counts the time down by itself, sleep until a player asks for something
+        if (env.config.turnTimeoutMillis > 0) // wake up when the turn times out
+            timeout = Math.max(timeLoopStarted + reshuffleTime - System.currentTimeMillis(), 1);
+        if (checkpointBuffer != null) { // wake up for the next checkpoint
+            long untilCheckpoint = Math.max(nextCheckpointTime - System.currentTimeMillis(), 1);
+            timeout = timeout == 0 ? untilCheckpoint : Math.min(timeout, untilCheckpoint);
+        }
+        if (terminate) return;
+        for (Player player : players)
+            if (!player.playerActions.isEmpty()) return; // a key was pressed meanwhile
+        // wait for either a key press (the input queues unpark the dealer), a verified claim or for the timeout
+        if (timeout == 0) LockSupport.park(this);
+        else LockSupport.parkNanos(this, timeout * 1_000_000);
     }
 
-    private void checkForSet(){
-        if (!checkIfSet.isEmpty()) {
-            playerToCheckID = checkIfSet.poll();
-            Player player = players[playerToCheckID];
-            int [] cards = new int [env.config.featureSize];
-            int i = 0;
-            synchronized (player.queuePlayerTokens){
-                this.setAttempt =  player.queuePlayerTokens.clone();
-                for (Integer token : player.queuePlayerTokens){
-                    synchronized(table){
-                        cards[i] = table.slotToCard[token];
-                    }
-                    i++;
+    /**
+     * Takes the pending key presses of all the players and toggles their tokens, in the order each player pressed the
+     * keys. A player that places its last token claims its set, and its key presses are dropped from then until it
+     * handles the dealer's answer.
+     */
+    void applyKeyPresses() {
+        for (Player player : players) {
+            InputRing actions = player.playerActions;
+            if (player.awaitingAnswer()) {
+                player.discardKeyPresses();
+                continue;
+            }
+            for (int slot; (slot = actions.poll()) >= 0; ) {
+                player.keyPressTaken();
+                long allocated = tokenBudget.start();
+                boolean claimed = toggleToken(player, slot, actions.polledPressTime());
+                tokenBudget.end(allocated);
+                if (claimed) {
+                    player.discardKeyPresses();
+                    break;
                 }
             }
-            this.correctSet = env.util.testSet(cards);
-            player.foundSet = correctSet;
-            player.waitForDealreAnswer = true;
-            player.dealerAnswer = true;
-            return;
-            
-        } 
+        }
+    }
+
+    /**
+     * Removes a player's token from a slot, or places one if it has none there (and the slot has a card).
+     *
+     * @param player    - the player pressing the key of the slot.
+     * @param slot      - the slot.
+     * @param pressTime - the time the key was pressed.
+     * @return - true iff the player placed its last token, and claims the set.
+     */
+    private boolean toggleToken(Player player, int slot, long pressTime) {
+        int[] slots = tokens[player.id];
+        for (int i = 0; i < tokenCounts[player.id]; i++) {
+            if (slots[i] == slot) {
+                slots[i] = slots[--tokenCounts[player.id]];
+                table.removeToken(player.id, slot);
+                return false;
+            }
+        }
+        if (table.slotToCard[slot] == null || tokenCounts[player.id] == slots.length) return false;
+        slots[tokenCounts[player.id]++] = slot;
+        table.placeToken(player.id, slot);
+        player.recordPressToToken(System.nanoTime() - pressTime);
+        if (tokenCounts[player.id] < slots.length) return false;
+        claimPressTimes[player.id] = pressTime;
+        claims.add(player);
+        player.claimSet(table.snapshot());
+        return true;
     }
 
+    /**
+     * Removes all the tokens of a player from the table, in a single table change.
+     */
+    private void removeTokens(Player player) {
+        table.removeTokens(player.id, tokens[player.id], tokenCounts[player.id]);
+        tokenCounts[player.id] = 0;
+    }
+
+    /**
+     * Checks all the claimed sets together, once the players verified them. In the order the sets were completed (the
+     * time of their last key press), a claim is:
+     * - SET_TAKEN if it shares a slot with an earlier accepted set,
+     * - SET if its cards form a legal set,
+     * - NOT_A_SET otherwise (and the player's tokens are removed).
+     * The cards of all the accepted sets are removed together, and the players are scored (or penalized) and answered
+     * afterwards, so the scores are final once the claims are checked.
+     *
+     * @param force - true to check the claims now, testing the sets the players did not verify yet by the dealer.
+     * @return - true iff any set was accepted.
+     */
+    boolean checkForSets(boolean force) {
+        if (claims.isEmpty()) return false;
+        if (!force) {
+            for (int c = 0; c < claims.size(); c++)
+                if (claims.get(c).verifiedClaim() == null) return false; // the player wakes the dealer up when it is done
+        }
+        long allocated = claimBudget.start();
+        claims.sort(byPressTime);
+
+        Arrays.fill(taken, false);
+        int accepted = 0;
+        for (int c = 0; c < claims.size(); c++) {
+            Player player = claims.get(c);
+            int[] slots = tokens[player.id];
+            boolean overlaps = false;
+            for (int slot : slots)
+                overlaps |= taken[slot];
+            if (overlaps) {
+                verdicts[c] = Verdict.SET_TAKEN;
+            } else if (legalClaim(player)) {
+                verdicts[c] = Verdict.SET;
+                for (int slot : slots)
+                    taken[slot] = true;
+                accepted++;
+            } else {
+                verdicts[c] = Verdict.NOT_A_SET;
+                removeTokens(player);
+                penalties++;
+            }
+        }
+
+        if (accepted > 0) {
+            int[] slots = new int[accepted * env.config.featureSize];
+            for (int slot = 0, i = 0; slot < taken.length; slot++)
+                if (taken[slot]) slots[i++] = slot;
+            table.removeCards(slots); // and the tokens on them
+            for (Player player : players) {
+                int[] playerSlots = tokens[player.id];
+                int kept = 0;
+                for (int i = 0; i < tokenCounts[player.id]; i++)
+                    if (!taken[playerSlots[i]]) playerSlots[kept++] = playerSlots[i];
+                tokenCounts[player.id] = kept;
+            }
+        }
+
+        for (int c = 0; c < claims.size(); c++) {
+            Player player = claims.get(c);
+            if (verdicts[c] == Verdict.SET) player.point(); // the dealer is the only writer of the scores
+            else if (verdicts[c] == Verdict.NOT_A_SET) player.penalty();
+            player.dealerAnswered(verdicts[c]);
+        }
+        claimsChecked += claims.size();
+        claimPasses++;
+        claims.clear();
+        claimBudget.end(allocated);
+        return accepted > 0;
+    }
+
+
+    /**
+     * The player's verification of its claim holds as long as no card was placed or removed since the snapshot it was
+     * verified in, so the dealer only compares the versions of the cards. Otherwise the dealer tests the cards itself.
+     *
+     * @param player - a player with a claim (its tokens are on all the cards of its set).
+     * @return - true iff the cards of the player's tokens form a legal set.
+     */
+    private boolean legalClaim(Player player) {
+        TableSnapshot verified = player.verifiedClaim();
+        if (verified != null && verified.cardsVersion() == table.snapshot().cardsVersion()) {
+            claimsVerified++;
+            return player.claimLegal();
+        }
+        int[] slots = tokens[player.id];
+        for (int i = 0; i < slots.length; i++)
+            claimCards[i] = table.slotToCard[slots[i]];
+        return env.util.testSet(claimCards);
+    }
 
     /**
-     * Reset and/or update the countdown and the countdown display.
+     * Starts the countdown display of the turn (or the elapsed time display), which the ui then updates by itself.
+     * Called when the turn starts, and whenever its countdown is reset.
+     *
+     * @param reset - true iff the turn ended: the full turn time is shown, without counting, until the next one starts.
      */
     private void updateTimerDisplay(boolean reset) {
-        long currentTime = System.currentTimeMillis();
-        boolean needWarning = (env.config.turnTimeoutWarningMillis >= env.config.turnTimeoutMillis-currentTime+timeLoopStarted) & !reset;
-        if (reset){
-            env.ui.setCountdown(env.config.turnTimeoutMillis, needWarning);
+        if (env.config.turnTimeoutMillis < 0) return;
+        if (env.config.turnTimeoutMillis == 0) {
+            if (reset) env.ui.setElapsed(0);
+            else env.ui.setElapsedSince(timeLoopStarted);
             return;
         }
-        env.ui.setCountdown(Math.max(reshuffleTime-currentTime+timeLoopStarted,0), needWarning);
+        if (reset) env.ui.setCountdown(env.config.turnTimeoutMillis, false);
+        else env.ui.setCountdownDeadline(timeLoopStarted + reshuffleTime, env.config.turnTimeoutWarningMillis);
     }
 
     /**
@@ -212,23 +655,24 @@ public class Dealer implements Runnable {
      */
     private void removeAllCardsFromTable() {
         // Collecting the cards back from the table when needed (after a minute or when there are no sets on the table)
-        synchronized (table) {
-            for ( Integer slot : table.cardToSlot){
-                if (slot != null){
-                    deck.add(table.slotToCard[slot]);
-                    table.removeCard(slot);
-                }
-            }
-            for (Player player : players){
-                player.removeTokens();
-            }
-            while (!checkIfSet.isEmpty()) {
-                int id = checkIfSet.remove();
-                players[id].waitForDealreAnswer = true;
-            }
-            checkIfSet.clear();
+        int[] slots = new int[table.countCards()];
+        int i = 0;
+        for (int slot = table.nextCardSlot(0); slot >= 0; slot = table.nextCardSlot(slot + 1)) {
+            deck.add(table.slotToCard[slot]);
+            slots[i++] = slot;
         }
-        Collections.shuffle(deck);
+        table.removeCards(slots); // and all the tokens
+        Arrays.fill(tokenCounts, 0);
+        for (Player player : players)
+            player.discardKeyPresses();
+        deck.shuffle(random);
+    }
+
+    /**
+     * @return - the number of cards left in the deck.
+     */
+    int cardsInDeck() {
+        return deck.size();
     }
 
     /**
@@ -236,24 +680,42 @@ public class Dealer implements Runnable {
      */
     private void announceWinners() {
         int maxScore = Integer.MIN_VALUE;
-        for (Player player : players){
-            if (player.score() > maxScore){
-                maxScore = player.score();
+        int[] winners = new int[players.length];
+        int count = 0;
+        for (Player player : players) {
+            int score = player.score();
+            if (score > maxScore) {
+                maxScore = score;
+                count = 0;
             }
+            if (score == maxScore) winners[count++] = player.id;
         }
-        ArrayDeque<Player> winnersPlayers = new ArrayDeque<>();
-        for (Player player : players){
-            if (player.score() == maxScore){
-                winnersPlayers.add(player);
+        env.ui.announceWinner(Arrays.copyOf(winners, count));
+
+        if (leaderboard != null) {
+            try {
+                for (Player player : players)
+                    leaderboard.recordGame(env.config.playerNames[player.id], player.score() == maxScore, player.score());
+            } catch (IOException e) {
+                env.logger.severe("error recording the game in the leaderboard: " + e.getMessage());
             }
         }
-        int[] winnersID = new int[winnersPlayers.size()];
-        int i = 0;
-        for (Player player : winnersPlayers){
-            winnersID[i] = player.id;
-            i++;
-        }
-        env.ui.announceWinner(winnersID);
     }
 
+    /**
+     * Adds the result of the game to the results store.
+     *
+     * @param durationMillis - the duration of the game.
+     */
+    private void storeResult(long durationMillis) {
+        if (results == null) return;
+        int[] scores = new int[players.length];
+        for (Player player : players)
+            scores[player.id] = player.score();
+        try {
+            results.append(durationMillis, env.config.fingerprint(), reshuffles, penalties, env.config.playerNames, scores);
+        } catch (IOException e) {
+            env.logger.severe("error storing the game result: " + e.getMessage());
+        }
+    }
 }
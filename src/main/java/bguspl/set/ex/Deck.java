@@ -0,0 +1,148 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class holds the dealer's deck as a primitive array of card ids.
+ *
+ * @inv 0 <= head <= tail <= cards.length
+ * @inv contains(card) iff card is in cards[head..tail)
+ * @inv contains(card) implies cards[position[card]] == card
+ */
+public class Deck {
+
+    /**
+     * The card ids, the cards that are still in the deck are cards[head..tail).
+     */
+    private final int[] cards;
+    private int head;
+    private int tail;
+
+    /**
+     * A bitmap of the cards that are in the deck.
+     */
+    private final long[] contained;
+
+    /**
+     * The index of each card in the cards array (valid only for cards in the deck).
+     */
+    private final int[] position;
+
+    /**
+     * Creates a deck that contains all the cards (in order).
+     *
+     * @param deckSize - the number of cards in the game.
+     */
+    public Deck(int deckSize) {
+        cards = new int[deckSize];
+        contained = new long[(deckSize + 63) >>> 6];
+        position = new int[deckSize];
+        for (int card = 0; card < deckSize; card++)
+            add(card);
+    }
+
+    /**
+     * @return - the number of cards in the deck.
+     */
+    public int size() {
+        return tail - head;
+    }
+
+    public boolean isEmpty() {
+        return head == tail;
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return (contained[card >>> 6] & (1L << card)) != 0;
+    }
+
+    /**
+     * Draws the top card of the deck.
+     *
+     * @return - the card drawn.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        int card = cards[head++];
+        contained[card >>> 6] &= ~(1L << card);
+        return card;
+    }
+
+    /**
+     * Draws a specific card out of the deck (the top card takes its place).
+     *
+     * @param card - the card to draw.
+     * @pre - contains(card)
+     */
+    public void remove(int card) {
+        swap(position[card], head);
+        draw();
+    }
+
+    /**
+     * Returns a card to the bottom of the deck.
+     *
+     * @param card - the card to return.
+     * @pre - the card is not in the deck.
+     */
+    public void add(int card) {
+        if (tail == cards.length) compact();
+        position[card] = tail;
+        cards[tail++] = card;
+        contained[card >>> 6] |= 1L << card;
+    }
+
+    /**
+     * Shuffles the cards in place (Fisher-Yates).
+     *
+     * @param random - the source of randomness.
+     */
+    public void shuffle(SplittableRandom random) {
+        for (int i = tail - 1; i > head; i--)
+            swap(i, head + random.nextInt(i - head + 1));
+    }
+
+    /**
+     * Replaces the cards in the deck (e.g. when resuming a game).
+     *
+     * @param cards - the cards to put in the deck, from top to bottom.
+     */
+    public void reset(int[] cards) {
+        while (!isEmpty())
+            draw();
+        head = tail = 0;
+        for (int card : cards)
+            add(card);
+    }
+
+    /**
+     * @return - a copy of the cards in the deck, from top to bottom.
+     */
+    public int[] toArray() {
+        return Arrays.copyOfRange(cards, head, tail);
+    }
+
+    /**
+     * Moves the cards in the deck to the start of the array, making room for returned cards.
+     */
+    private void compact() {
+        System.arraycopy(cards, head, cards, 0, tail - head);
+        tail -= head;
+        head = 0;
+        for (int i = 0; i < tail; i++)
+            position[cards[i]] = i;
+    }
+
+    private void swap(int i, int j) {
+        int card = cards[i];
+        cards[i] = cards[j];
+        cards[j] = card;
+        position[cards[i]] = i;
+        position[cards[j]] = j;
+    }
+}
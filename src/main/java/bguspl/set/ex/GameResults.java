@@ -0,0 +1,431 @@
+package bguspl.set.ex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class stores the results of finished games in append-only segment files, and keeps indexes on the side so
+ * the common queries never scan the segments:
+ * - players.idx and configs.idx chain the games of each player and of each game configuration (newest first),
+ * - time.idx lists the end time and address of every game in order, for binary searching time ranges.
+ * The segments are the source of truth; the indexes are written after them, time.idx last. When the store is
+ * opened, torn index entries are trimmed, the entries of games after the last one in time.idx are dropped, and the
+ * games stored after it in the segments are indexed again (a torn record at the end of a segment is trimmed).
+ */
+public class GameResults implements Closeable {
+
+    /**
+     * The result of a single game.
+     */
+    public static class Game {
+
+        public final long endMillis;
+        public final long durationMillis;
+        public final long configKey;
+        public final int reshuffles;
+        public final int penalties;
+        public final String[] names;
+        public final int[] scores;
+
+        public Game(long endMillis, long durationMillis, long configKey, int reshuffles, int penalties, String[] names, int[] scores) {
+            this.endMillis = endMillis;
+            this.durationMillis = durationMillis;
+            this.configKey = configKey;
+            this.reshuffles = reshuffles;
+            this.penalties = penalties;
+            this.names = names;
+            this.scores = scores;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < names.length; i++)
+                builder.append(i == 0 ? "" : ", ").append(names[i]).append(' ').append(scores[i]);
+            return "game ended at " + endMillis + " after " + durationMillis + "ms (" + reshuffles + " reshuffles, "
+                    + penalties + " penalties): " + builder;
+        }
+    }
+
+    /**
+     * An index chaining the games with the same key, newest first. Its entries are (key, game address, previous
+     * entry of the key, value); the head, length and sum of values of every chain are kept in memory.
+     */
+    private static class ChainIndex {
+
+        private static final int ENTRY_BYTES = 32;
+
+        private static class Chain {
+            private long head;
+            private long count;
+            private long sum;
+        }
+
+        private final FileChannel channel;
+        private final Map<Long, Chain> chains = new HashMap<>();
+        private final ByteBuffer entry = ByteBuffer.allocate(ENTRY_BYTES);
+        private long entries;
+
+        /**
+         * @param lastAddress - the address of the last indexed game: the entries of later games are dropped.
+         */
+        private ChainIndex(Path file, long lastAddress) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long stored = channel.size() / ENTRY_BYTES;
+
+            ByteBuffer buffer = ByteBuffer.allocate(ENTRY_BYTES * 2048);
+            load:
+            while (entries < stored) {
+                buffer.clear();
+                readFully(channel, buffer, entries * ENTRY_BYTES);
+                while (buffer.remaining() >= ENTRY_BYTES && entries < stored) {
+                    long key = buffer.getLong();
+                    long address = buffer.getLong();
+                    buffer.getLong();
+                    long value = buffer.getLong();
+                    if (address > lastAddress) break load;
+                    add(key, entries++, value);
+                }
+            }
+            channel.truncate(entries * ENTRY_BYTES);
+        }
+
+        private void append(long key, long address, long value) throws IOException {
+            Chain chain = chains.get(key);
+            entry.clear();
+            entry.putLong(key).putLong(address).putLong(chain == null ? -1 : chain.head).putLong(value).flip();
+            writeFully(channel, entry, entries * ENTRY_BYTES);
+            add(key, entries++, value);
+        }
+
+        private void add(long key, long index, long value) {
+            Chain chain = chains.computeIfAbsent(key, k -> new Chain());
+            chain.head = index;
+            chain.count++;
+            chain.sum += value;
+        }
+
+        /**
+         * @return - the index of the newest entry with the key, or -1 if there is none.
+         */
+        private long head(long key) {
+            Chain chain = chains.get(key);
+            return chain == null ? -1 : chain.head;
+        }
+
+        /**
+         * Reads an entry: its game address is at offset 8, and the index of the previous entry of its key (-1 if
+         * there is none) at offset 16.
+         */
+        private ByteBuffer read(long index, ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            readFully(channel, buffer, index * ENTRY_BYTES);
+            return buffer;
+        }
+    }
+
+    /**
+     * The maximal size of a segment file. Game addresses are the segment number followed by a 32 bit offset.
+     */
+    private static final long SEGMENT_BYTES = 64L << 20;
+
+    private static final int TIME_ENTRY_BYTES = 16;
+
+    /**
+     * The size of a record of a game without players.
+     */
+    private static final int MIN_RECORD_BYTES = 4 + 8 * 3 + 4 * 2 + 2;
+
+    /**
+     * The maximal number of players in a game, and the maximal length of a player name in UTF-8 bytes (both are
+     * stored as shorts).
+     */
+    public static final int MAX_PLAYERS = Short.MAX_VALUE;
+    public static final int MAX_NAME_BYTES = Short.MAX_VALUE;
+
+    private final Path directory;
+    private final List<FileChannel> segments = new ArrayList<>();
+    private final ChainIndex players;
+    private final ChainIndex configs;
+    private final FileChannel times;
+    private long timeEntries;
+
+    /**
+     * The end time of the last game stored. End times never go back, so the time index stays sorted.
+     */
+    private long lastEndMillis;
+
+    /**
+     * Opens a results store, creating its directory if it does not exist.
+     *
+     * @param directory - the directory of the segment and index files.
+     * @throws IOException - if the files cannot be opened.
+     */
+    public GameResults(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        for (int segment = 0; Files.exists(segmentFile(segment)); segment++)
+            segments.add(FileChannel.open(segmentFile(segment), StandardOpenOption.READ, StandardOpenOption.WRITE));
+        if (segments.isEmpty()) segments.add(FileChannel.open(segmentFile(0), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE));
+
+        times = FileChannel.open(directory.resolve("time.idx"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        timeEntries = times.size() / TIME_ENTRY_BYTES;
+        times.truncate(timeEntries * TIME_ENTRY_BYTES);
+        long lastAddress = -1;
+        if (timeEntries > 0) {
+            ByteBuffer last = timeEntry(timeEntries - 1);
+            lastEndMillis = last.getLong(0);
+            lastAddress = last.getLong(8);
+        }
+        players = new ChainIndex(directory.resolve("players.idx"), lastAddress);
+        configs = new ChainIndex(directory.resolve("configs.idx"), lastAddress);
+        indexTail(lastAddress);
+    }
+
+    /**
+     * @param name - a player name.
+     * @return - the key the games of the player are indexed by.
+     */
+    public static long playerKey(String name) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8))
+            hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+        return hash;
+    }
+
+    /**
+     * Stores the result of a finished game.
+     *
+     * @param durationMillis - the duration of the game.
+     * @param configKey      - the fingerprint of the game configuration.
+     * @param reshuffles     - the number of times the table was reshuffled.
+     * @param penalties      - the number of penalties given.
+     * @param names          - the player names.
+     * @param scores         - the player scores.
+     * @return - the stored game.
+     * @throws IOException              - if the result cannot be written.
+     * @throws IllegalArgumentException - if the game has more than MAX_PLAYERS players, or a name longer than
+     *                                    MAX_NAME_BYTES.
+     */
+    public synchronized Game append(long durationMillis, long configKey, int reshuffles, int penalties, String[] names, int[] scores) throws IOException {
+        long endMillis = lastEndMillis = Math.max(System.currentTimeMillis(), lastEndMillis);
+        Game game = new Game(endMillis, durationMillis, configKey, reshuffles, penalties, names, scores);
+        ByteBuffer record = encode(game);
+
+        FileChannel segment = segments.get(segments.size() - 1);
+        if (segment.size() + record.remaining() > SEGMENT_BYTES) {
+            segment = FileChannel.open(segmentFile(segments.size()), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            segments.add(segment);
+        }
+        long offset = segment.size();
+        long address = (long) (segments.size() - 1) << 32 | offset;
+        writeFully(segment, record, offset);
+        index(game, address);
+        return game;
+    }
+
+    /**
+     * Adds a stored game to the indexes.
+     */
+    private void index(Game game, long address) throws IOException {
+        for (int i = 0; i < game.names.length; i++)
+            players.append(playerKey(game.names[i]), address, game.scores[i]);
+        configs.append(game.configKey, address, game.durationMillis);
+        ByteBuffer entry = ByteBuffer.allocate(TIME_ENTRY_BYTES).putLong(game.endMillis).putLong(address).flip();
+        writeFully(times, entry, timeEntries++ * TIME_ENTRY_BYTES);
+    }
+
+    /**
+     * Indexes the games stored in the segments after the last indexed one (e.g. when the store was not closed
+     * properly), and trims a torn record at the end of a segment.
+     *
+     * @param lastAddress - the address of the last indexed game (-1 if there is none).
+     */
+    private void indexTail(long lastAddress) throws IOException {
+        int segment = 0;
+        long offset = 0;
+        if (lastAddress >= 0) {
+            segment = (int) (lastAddress >>> 32);
+            offset = (lastAddress & 0xffffffffL) + recordLength(segments.get(segment), lastAddress & 0xffffffffL);
+        }
+        for (; segment < segments.size(); segment++, offset = 0) {
+            FileChannel channel = segments.get(segment);
+            for (long size = channel.size(); offset < size; ) {
+                long recordLength = offset + 4 <= size ? recordLength(channel, offset) : 0;
+                if (recordLength < MIN_RECORD_BYTES || offset + recordLength > size) {
+                    channel.truncate(offset);
+                    break;
+                }
+                long address = (long) segment << 32 | offset;
+                Game game = read(address);
+                lastEndMillis = Math.max(lastEndMillis, game.endMillis);
+                index(game, address);
+                offset += recordLength;
+            }
+        }
+    }
+
+    private static int recordLength(FileChannel segment, long offset) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(segment, length, offset);
+        return length.remaining() == 4 ? length.getInt(0) : 0;
+    }
+
+    /**
+     * The games are found through the chain of the player's key, and kept if the player's name is in the stored game
+     * (other names may have the same key).
+     *
+     * @param name - a player name.
+     * @param n    - the maximal number of games to return.
+     * @return - the last games of the player (up to n), newest first.
+     */
+    public synchronized List<Game> lastGames(String name, int n) throws IOException {
+        List<Game> games = new ArrayList<>();
+        ByteBuffer entry = ByteBuffer.allocate(ChainIndex.ENTRY_BYTES);
+        long lastAddress = -1;
+        for (long index = players.head(playerKey(name)); index >= 0 && games.size() < n; index = entry.getLong(16)) {
+            long address = players.read(index, entry).getLong(8);
+            if (address == lastAddress) continue; // the name is in the game more than once
+            lastAddress = address;
+            Game game = read(address);
+            if (Arrays.asList(game.names).contains(name)) games.add(game);
+        }
+        return games;
+    }
+
+    /**
+     * @param configKey - the fingerprint of a game configuration.
+     * @return - the number of games stored with the configuration.
+     */
+    public synchronized long games(long configKey) {
+        ChainIndex.Chain chain = configs.chains.get(configKey);
+        return chain == null ? 0 : chain.count;
+    }
+
+    /**
+     * @param configKey - the fingerprint of a game configuration.
+     * @return - the average duration of the games with the configuration (NaN if there are none).
+     */
+    public synchronized double averageDurationMillis(long configKey) {
+        ChainIndex.Chain chain = configs.chains.get(configKey);
+        return chain == null ? Double.NaN : (double) chain.sum / chain.count;
+    }
+
+    /**
+     * @param fromMillis - the start of the time range (inclusive).
+     * @param toMillis   - the end of the time range (exclusive).
+     * @return - the games that ended in the time range, oldest first.
+     */
+    public synchronized List<Game> gamesBetween(long fromMillis, long toMillis) throws IOException {
+        long low = 0, high = timeEntries; // find the first entry that ended at fromMillis or later
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (timeEntry(middle).getLong(0) < fromMillis) low = middle + 1;
+            else high = middle;
+        }
+
+        List<Game> games = new ArrayList<>();
+        for (long index = low; index < timeEntries; index++) {
+            ByteBuffer entry = timeEntry(index);
+            if (entry.getLong(0) >= toMillis) break;
+            games.add(read(entry.getLong(8)));
+        }
+        return games;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (FileChannel segment : segments) {
+            segment.force(false);
+            segment.close();
+        }
+        players.channel.close();
+        configs.channel.close();
+        times.close();
+    }
+
+    private Path segmentFile(int segment) {
+        return directory.resolve(String.format("results-%06d.seg", segment));
+    }
+
+    private ByteBuffer timeEntry(long index) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(TIME_ENTRY_BYTES);
+        readFully(times, entry, index * TIME_ENTRY_BYTES);
+        return entry;
+    }
+
+    /**
+     * Record layout: length (int), end time, duration, config key (longs), reshuffles, penalties (ints), number of
+     * players (short), and for each player its name (short length and UTF-8 bytes) and score (int).
+     */
+    private static ByteBuffer encode(Game game) {
+        if (game.names.length > MAX_PLAYERS) throw new IllegalArgumentException(game.names.length + " players are more than " + MAX_PLAYERS);
+        byte[][] names = new byte[game.names.length][];
+        int length = MIN_RECORD_BYTES;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = game.names[i].getBytes(StandardCharsets.UTF_8);
+            if (names[i].length > MAX_NAME_BYTES) throw new IllegalArgumentException("the name of player " + (i + 1) + " is longer than " + MAX_NAME_BYTES + " bytes");
+            length += 2 + names[i].length + 4;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putInt(length).putLong(game.endMillis).putLong(game.durationMillis).putLong(game.configKey)
+                .putInt(game.reshuffles).putInt(game.penalties).putShort((short) names.length);
+        for (int i = 0; i < names.length; i++)
+            record.putShort((short) names[i].length).put(names[i]).putInt(game.scores[i]);
+        return record.flip();
+    }
+
+    private Game read(long address) throws IOException {
+        FileChannel segment = segments.get((int) (address >>> 32));
+        long offset = address & 0xffffffffL;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(segment, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(segment, record, offset);
+
+        record.getInt();
+        long endMillis = record.getLong();
+        long durationMillis = record.getLong();
+        long configKey = record.getLong();
+        int reshuffles = record.getInt();
+        int penalties = record.getInt();
+        String[] names = new String[record.getShort()];
+        int[] scores = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = new byte[record.getShort()];
+            record.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+            scores[i] = record.getInt();
+        }
+        return new Game(endMillis, durationMillis, configKey, reshuffles, penalties, names, scores);
+    }
+
+    /**
+     * Reads from the position until the buffer is full or the file ends, and flips the buffer.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+        buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+}
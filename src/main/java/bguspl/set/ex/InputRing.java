@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free queue of key presses (slots), together with the time each key was pressed.
+ * There is a single producer (the keyboard or the AI thread), and a consumer thread that is unparked when a key
+ * press is offered. Discarding the queue contents is also lock-free, so any thread may clear it.
+ *
+ * @inv 0 <= tail - head <= capacity
+ */
+public class InputRing {
+
+    private final int capacity;
+    private final int[] slots;
+    private final long[] pressTimes;
+
+    /**
+     * The index of the next key press to take, and of the next free entry.
+     */
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The thread to unpark when a key press is offered (null if none).
+     */
+    private volatile Thread consumer;
+
+    /**
+     * The press time of the last key press taken by poll.
+     */
+    private long polledPressTime;
+
+    /**
+     * @param capacity - the maximal number of key presses waiting in the queue.
+     */
+    public InputRing(int capacity) {
+        this.capacity = capacity;
+        this.slots = new int[capacity];
+        this.pressTimes = new long[capacity];
+    }
+
+    /**
+     * Sets the thread to unpark when a key press is offered.
+     * @param consumer - the consuming thread.
+     */
+    public void setConsumer(Thread consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Adds a key press to the queue. Must only be called by the producer thread.
+     * @param slot      - the slot corresponding to the key pressed.
+     * @param pressTime - the time the key was pressed (System.nanoTime).
+     * @return          - true iff the key press was added (false if the queue is full).
+     */
+    public boolean offer(int slot, long pressTime) {
+        long t = tail.get();
+        if (t - head.get() >= capacity) return false;
+        int index = (int) (t % capacity);
+        slots[index] = slot;
+        pressTimes[index] = pressTime;
+        tail.lazySet(t + 1); // publishes the entry to the consumer
+        LockSupport.unpark(consumer);
+        return true;
+    }
+
+    /**
+     * Takes the oldest key press out of the queue. Must only be called by the consumer thread.
+     * @return - the slot of the key press, or -1 if the queue is empty.
+     *
+     * @post - polledPressTime() returns the time the key was pressed.
+     */
+    public int poll() {
+        while (true) {
+            long h = head.get();
+            if (h == tail.get()) return -1;
+            int index = (int) (h % capacity);
+            int slot = slots[index];
+            long pressTime = pressTimes[index];
+            if (head.compareAndSet(h, h + 1)) { // fails only if the queue was cleared meanwhile
+                polledPressTime = pressTime;
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * @return - the time the key of the last key press returned by poll was pressed.
+     */
+    public long polledPressTime() {
+        return polledPressTime;
+    }
+
+    /**
+     * Discards all the key presses in the queue.
+     */
+    public void clear() {
+        long h;
+        do {
+            h = head.get();
+        } while (!head.compareAndSet(h, Math.max(h, tail.get())));
+    }
+
+    public int size() {
+        long h = head.get(); // read before the tail, so the size is never negative
+        return (int) (tail.get() - h);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isFull() {
+        return size() >= capacity;
+    }
+}
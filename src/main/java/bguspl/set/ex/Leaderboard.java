@@ -0,0 +1,334 @@
+package bguspl.set.ex;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class keeps the cumulative standings of players across games in a memory-mapped file of fixed size records.
+ * Any number of games may update it concurrently, also from other processes (each with a single instance of this
+ * class for the file), and reads never block the updating threads.
+ *
+ * File layout: a header (magic, capacity, number of records) followed by the records. Each record holds a version
+ * (a sequence lock: odd while the record is being updated), the number of games, wins and points, and the name.
+ * Records are only appended, while holding a lock on the header of the file.
+ */
+public class Leaderboard implements Closeable {
+
+    /**
+     * The standing of a single player.
+     */
+    public static class Standing {
+
+        public final String name;
+        public final long games;
+        public final long wins;
+        public final long points;
+
+        private Standing(String name, long games, long wins, long points) {
+            this.name = name;
+            this.games = games;
+            this.wins = wins;
+            this.points = points;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + points + " points, " + wins + " wins in " + games + " games";
+        }
+    }
+
+    /**
+     * The default number of records in a new file, and the number of top standings kept.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int TOP = 10;
+
+    private static final int MAGIC = 0x5345544C; // "SETL"
+    private static final int HEADER_BYTES = 64;
+    private static final int CAPACITY_OFFSET = 4;
+    private static final int COUNT_OFFSET = 8;
+
+    private static final int RECORD_BYTES = 64;
+    private static final int VERSION_OFFSET = 0;
+    private static final int GAMES_OFFSET = 8;
+    private static final int WINS_OFFSET = 16;
+    private static final int POINTS_OFFSET = 24;
+    private static final int NAME_LENGTH_OFFSET = 32;
+    private static final int NAME_OFFSET = 36;
+    private static final int MAX_NAME_BYTES = RECORD_BYTES - NAME_OFFSET;
+
+    /**
+     * The time a record may stay locked by the same update before its writer is taken for dead (e.g. its process was
+     * killed in the middle of the update), and the lock is released.
+     */
+    private static final long STALE_LOCK_NANOS = 1_000_000_000L;
+
+    /**
+     * Atomic and ordered access to the ints and longs in the mapped file.
+     */
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final Comparator<Standing> RANKING =
+            Comparator.comparingLong((Standing standing) -> standing.points).thenComparingLong(standing -> standing.wins).reversed();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    /**
+     * The record index of each player name, for the records [0..indexed) of the file.
+     */
+    private final Map<String, Integer> records = new ConcurrentHashMap<>();
+    private volatile int indexed;
+
+    /**
+     * The best standings, sorted. Replaced (never modified) on every update of this instance, so readers can use it
+     * without locking.
+     */
+    private volatile List<Standing> top;
+
+    private Leaderboard(FileChannel channel, MappedByteBuffer buffer, int capacity) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+
+        List<Standing> standings = new ArrayList<>();
+        for (int record = indexRecords() - 1; record >= 0; record--)
+            standings.add(read(record));
+        standings.sort(RANKING);
+        top = Collections.unmodifiableList(new ArrayList<>(standings.subList(0, Math.min(TOP, standings.size()))));
+    }
+
+    /**
+     * Opens a leaderboard file, creating it if it does not exist.
+     *
+     * @param file - the leaderboard file.
+     * @return - the leaderboard.
+     * @throws IOException - if the file cannot be opened or is not a leaderboard file.
+     */
+    public static Leaderboard open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            boolean created = channel.size() == 0;
+            int capacity = DEFAULT_CAPACITY;
+            if (!created) {
+                MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+                if (header.getInt(0) != MAGIC) throw new IOException(file + " is not a leaderboard file");
+                capacity = header.getInt(CAPACITY_OFFSET);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+            if (created) {
+                buffer.putInt(CAPACITY_OFFSET, capacity);
+                buffer.putInt(COUNT_OFFSET, 0);
+                buffer.putInt(0, MAGIC);
+            }
+            return new Leaderboard(channel, buffer, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the result of a game to a player's standing.
+     *
+     * @param name   - the player name.
+     * @param won    - true iff the player won the game (or tied for the win).
+     * @param points - the player's score in the game.
+     * @throws IOException           - if the file cannot be locked to add the player.
+     * @throws IllegalStateException - if the leaderboard is full.
+     */
+    public void recordGame(String name, boolean won, int points) throws IOException {
+        int record = recordOf(name);
+        int offset = HEADER_BYTES + record * RECORD_BYTES;
+
+        // lock the record: make its version odd
+        long version;
+        do {
+            version = unlockedVersion(offset);
+        } while (!LONG.compareAndSet(buffer, offset + VERSION_OFFSET, version, version + 1));
+
+        LONG.getAndAdd(buffer, offset + GAMES_OFFSET, 1L);
+        if (won) LONG.getAndAdd(buffer, offset + WINS_OFFSET, 1L);
+        LONG.getAndAdd(buffer, offset + POINTS_OFFSET, (long) points);
+        LONG.setVolatile(buffer, offset + VERSION_OFFSET, version + 2);
+
+        updateTop(record);
+    }
+
+    /**
+     * @param name - a player name.
+     * @return - the player's standing, or null if the player never played.
+     */
+    public Standing standing(String name) {
+        name = storedName(name);
+        Integer record = records.get(name);
+        if (record == null && (int) INT.getVolatile(buffer, COUNT_OFFSET) > indexed) {
+            indexRecords();
+            record = records.get(name);
+        }
+        return record == null ? null : read(record);
+    }
+
+    /**
+     * The best standings are read from the file when it is opened, and then kept up to date by the games recorded
+     * through this instance only: the standings of players updated by other processes since then show here once
+     * they are updated through this instance too. See snapshot() for the standings of all the processes.
+     *
+     * @return - the best standings (up to TOP), best first.
+     */
+    public List<Standing> top() {
+        return top;
+    }
+
+    /**
+     * @return - the standings of all the players, best first. Each standing is consistent (never half updated).
+     */
+    public List<Standing> snapshot() {
+        if ((int) INT.getVolatile(buffer, COUNT_OFFSET) > indexed) indexRecords();
+        List<Standing> standings = new ArrayList<>(records.size());
+        for (int record : records.values())
+            standings.add(read(record));
+        standings.sort(RANKING);
+        return standings;
+    }
+
+    /**
+     * Writes the changes to the disk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Finds the record of a player, creating it if needed. The record is appended while holding the lock on the
+     * header of the file, after indexing the records other processes appended meanwhile, so a player never gets two
+     * records.
+     */
+    private int recordOf(String name) throws IOException {
+        name = storedName(name);
+        Integer record = records.get(name);
+        if (record != null) return record;
+        synchronized (this) {
+            FileLock lock = channel.lock(0, HEADER_BYTES, false);
+            try {
+                int count = indexRecords();
+                record = records.get(name);
+                if (record != null) return record;
+
+                if (count == capacity) throw new IllegalStateException("the leaderboard is full (" + capacity + " players)");
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                int offset = HEADER_BYTES + count * RECORD_BYTES;
+                buffer.putInt(offset + NAME_LENGTH_OFFSET, bytes.length);
+                for (int i = 0; i < bytes.length; i++)
+                    buffer.put(offset + NAME_OFFSET + i, bytes[i]);
+                INT.setVolatile(buffer, COUNT_OFFSET, count + 1); // publishes the record
+                records.put(name, count);
+                indexed = count + 1;
+                return count;
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * @param name - a player name.
+     * @return - the name as it is stored in a record: cut to MAX_NAME_BYTES bytes of UTF-8, without splitting a
+     *           character.
+     */
+    private static String storedName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NAME_BYTES) return name;
+        int length = MAX_NAME_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) length--; // the first byte left out continues a character
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds the records appended to the file since they were last indexed (e.g. by other processes) to the index.
+     *
+     * @return - the number of records in the file.
+     */
+    private synchronized int indexRecords() {
+        int count = (int) INT.getVolatile(buffer, COUNT_OFFSET);
+        for (; indexed < count; indexed++)
+            records.putIfAbsent(read(indexed).name, indexed);
+        return count;
+    }
+
+    /**
+     * Reads a consistent copy of a record, retrying while it is being updated (readers never block the writers).
+     */
+    private Standing read(int record) {
+        int offset = HEADER_BYTES + record * RECORD_BYTES;
+        byte[] bytes = new byte[buffer.getInt(offset + NAME_LENGTH_OFFSET)];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = buffer.get(offset + NAME_OFFSET + i);
+        String name = new String(bytes, StandardCharsets.UTF_8);
+
+        while (true) {
+            long version = unlockedVersion(offset);
+            long games = (long) LONG.getVolatile(buffer, offset + GAMES_OFFSET);
+            long wins = (long) LONG.getVolatile(buffer, offset + WINS_OFFSET);
+            long points = (long) LONG.getVolatile(buffer, offset + POINTS_OFFSET);
+            if (version == (long) LONG.getVolatile(buffer, offset + VERSION_OFFSET))
+                return new Standing(name, games, wins, points);
+        }
+    }
+
+    /**
+     * Waits until a record is not locked. A record that stays locked by the same update for STALE_LOCK_NANOS was left
+     * locked by a writer that died, so its lock is released (the record keeps the part of the update that was made).
+     *
+     * @return - the version of the record, even.
+     */
+    private long unlockedVersion(int offset) {
+        long version = (long) LONG.getVolatile(buffer, offset + VERSION_OFFSET);
+        long lockedSince = System.nanoTime();
+        while ((version & 1) != 0) {
+            Thread.yield(); // let the writer finish its update
+            long current = (long) LONG.getVolatile(buffer, offset + VERSION_OFFSET);
+            if (current != version) {
+                version = current;
+                lockedSince = System.nanoTime();
+            } else if (System.nanoTime() - lockedSince >= STALE_LOCK_NANOS) {
+                LONG.compareAndSet(buffer, offset + VERSION_OFFSET, version, version + 1);
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Updates the top standings with a player's new standing. Since standings only grow, the players outside the
+     * top never have to be looked at. The standing is read while holding the lock, so it is never older than the one
+     * installed by a concurrent update of the same player.
+     */
+    private synchronized void updateTop(int record) {
+        Standing standing = read(record);
+        List<Standing> updated = new ArrayList<>(top.size() + 1);
+        for (Standing other : top)
+            if (!other.name.equals(standing.name)) updated.add(other);
+        updated.add(standing);
+        updated.sort(RANKING);
+        top = Collections.unmodifiableList(new ArrayList<>(updated.subList(0, Math.min(TOP, updated.size()))));
+    }
+}
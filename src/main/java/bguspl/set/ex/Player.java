@@ -1,8 +1,9 @@
 package bguspl.set.ex;
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.concurrent.locks.LockSupport;
 import bguspl.set.Env;
-import java.util.Random;
+import bguspl.set.ThreadProfiler;
+import bguspl.set.ex.ai.RandomStrategy;
+import bguspl.set.ex.ai.Strategy;
 
 /**
  * This class manages the players' threads and data
@@ -30,39 +31,66 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;
+    private volatile Thread playerThread;
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;
+    private volatile Thread aiThread;
 
     /**
      * True iff the player is human (not a computer player).
      */
     private final boolean human;
 
+    /**
+     * The strategy generating the key presses of a computer player.
+     */
+    private final Strategy strategy;
+
+    /**
+     * The number of key presses generated by the strategy so far.
+     */
+    private volatile long decisions;
+
     /**
      * True iff game should be terminated.
      */
     private volatile boolean terminate;
 
     /**
-     * The current score of the player.
+     * The current score of the player (written by the dealer thread only, read by the ui when the game ends).
+     */
+    private volatile int score;
+
+    /**
+     * Statistics of the latency between a key press and the placement of its token (in nanoseconds), recorded by the
+     * dealer thread.
+     */
+    private long tokensPlaced;
+    private long totalPressToTokenNanos;
+    private long maxPressToTokenNanos;
+
+    /**
+     * The time (System.nanoTime) until which the player is frozen, key presses before it are dropped.
      */
-    private int score;
+    private volatile long frozenUntil;
 
     /**
-     * The queue keeping  the key presses that a player did.
+     * The queue keeping the key presses that a player did. The dealer thread takes them and toggles the tokens.
      */
+     final InputRing playerActions;
+     private volatile Verdict verdict; // the dealer's answer to the player's last set, until the player handles it
 
-     volatile ArrayDeque<Integer> queuePlayerTokens;
-     private volatile Queue<Integer> playerActions;
-     volatile public boolean foundSet;
-     volatile boolean waitForDealreAnswer; // the player sent a set to the dealer
-     volatile boolean dealerAnswer; // true if the dealer checked the set, false if the dealer could nou check the set because another player took it
-    //  volatile boolean waitForDealreAnswer; // this player asked the dealer to check a set and the dealer handled it.
-    //  volatile boolean setNoLongerAvaliable; // 
+    /**
+     * The player's claimed set, verified on the player thread: the snapshot of the table the set was claimed in (null
+     * if the player has no claim to answer), the last snapshot the player verified, and whether the cards of its
+     * tokens there form a legal set. The dealer writes the claim, the player thread writes the verification.
+     */
+    private volatile TableSnapshot claim;
+    private volatile TableSnapshot verified;
+    private boolean legal; // published by the write of verified
+    private final int[] claimCards;
      Dealer dealer;
     
      /**
@@ -75,22 +103,36 @@ public class Player implements Runnable {
      * @param human  - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
      */
     public Player(Env env, Dealer dealer, Table table, int id, boolean human) {
+        this(env, dealer, table, id, human, new RandomStrategy(env, env.config.random("player-" + id)));
+    }
+
+    /**
+     * The class constructor for a player driven by a specific strategy.
+     *
+     * @param env      - the environment object.
+     * @param dealer   - the dealer object.
+     * @param table    - the table object.
+     * @param id       - the id of the player.
+     * @param human    - true iff the player is a human player (i.e. input is provided manually, via the keyboard).
+     * @param strategy - the strategy generating the key presses of a computer player.
+     */
+    public Player(Env env, Dealer dealer, Table table, int id, boolean human, Strategy strategy) {
         this.env = env;
+        this.strategy = strategy;
         this.dealer = dealer;
         this.table = table;
         this.id = id;
         this.human = human;
         terminate = false;
-        queuePlayerTokens = new ArrayDeque<>(env.config.featureSize);
-        playerActions = new ArrayDeque<>();
-        foundSet = false;
-        waitForDealreAnswer = false;
-        dealerAnswer = false;
-        
+        playerActions = new InputRing(env.config.featureSize);
+        claimCards = new int[env.config.featureSize];
+        frozenUntil = System.nanoTime();
     }
 
     /**
-     * The main player thread of each player starts here (main loop for the player thread).
+     * The main player thread of each player starts here (main loop for the player thread). The dealer places the
+     * player's tokens, checks its sets and scores them. The player thread verifies its claimed sets for the dealer,
+     * and drops the key presses made before the dealer's answer.
      */
     @Override
     public void  run() {
@@ -98,74 +140,55 @@ public class Player implements Runnable {
         env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
 
-        while (!terminate) {
-            while(playerActions.size() == 0){
-                try { wait(1000);
-                } catch (Exception e) {}
-            }
-            if(queuePlayerTokens.size() < env.config.featureSize & !terminate){
-                int slot = playerActions.remove();
-                boolean toRemove;
-                synchronized(queuePlayerTokens){
-                    toRemove = queuePlayerTokens.remove(slot);
-                }
-
-                if (!toRemove) {
-                    synchronized(queuePlayerTokens){
-                        synchronized(table){
-                            if(table.slotToCard[slot] != null){
-                            queuePlayerTokens.add(slot);
-                            table.placeToken(id, slot);
-                            }
-                        }
-                    }
-                }
-                else {
-                    synchronized(table){
-                        table.removeToken(id, slot);
-                    }
-                }
+        while (true) {
+            TableSnapshot claim = this.claim;
+            if (claim != null && claim != verified) verifyClaim(claim);
+            Verdict verdict = this.verdict;
+            if (verdict == null) {
+                if (terminate) break; // the dealer answers the last sets before it terminates the players
+                LockSupport.park(this); // idle until the dealer asks to verify a set or answers one
+                continue;
             }
-            if ((queuePlayerTokens.size() == env.config.featureSize)){
-                dealer.checkIfSet.add(id);
-                while(!waitForDealreAnswer & !terminate){}
-                if (dealerAnswer){
-                    if(foundSet){
-                        point();
-                    }           
-                    else{
-                        penalty();
-                    }
-                    dealerAnswer = false;
-                }
-                synchronized(playerActions){
-                    this.playerActions.clear();
-                }
-                waitForDealreAnswer = false;
-            }
-           
+            playerActions.clear(); // key presses that were made before the answer
+            this.verdict = null; // the dealer takes the player's key presses again
+            if (!human) LockSupport.unpark(aiThread);
         }
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
+        if (tokensPlaced > 0)
+            env.logger.info("player " + (id + 1) + " press to token latency: average " + totalPressToTokenNanos / tokensPlaced / 1000
+                    + "us, max " + maxPressToTokenNanos / 1000 + "us over " + tokensPlaced + " tokens.");
         env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        ThreadProfiler.exit();
     }
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
      * key presses. If the queue of key presses is full, the thread waits until it is not full.
      */
-    private void createArtificialIntelligence() { //to update
-        // note: this is a very, very smart AI (!)
+    private void createArtificialIntelligence() {
         aiThread = new Thread(() -> {
             env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                if ((playerActions.size() < env.config.featureSize) & !waitForDealreAnswer & !terminate) {
-                    Random rand = new Random();
-                    int randomSlot = rand.nextInt(env.config.tableSize);
-                    keyPressed(randomSlot);
+                long frozenNanos = frozenUntil - System.nanoTime();
+                if (frozenNanos > 0) {
+                    LockSupport.parkNanos(this, frozenNanos); // no point in pressing keys while frozen
+                    continue;
                 }
+                if (playerActions.isFull() | awaitingAnswer()) {
+                    LockSupport.park(this); // the dealer (or player) thread unparks this thread when it can take more key presses
+                    continue;
+                }
+                int slot = strategy.nextPress(table, id);
+                if (slot >= 0) {
+                    keyPressed(slot);
+                    decisions++;
+                }
+                else Thread.yield(); // the strategy has nothing to press right now
             }
             env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
-        }, "computer-" + id);
+            ThreadProfiler.exit();
+        }, "computer-" + (id + 1));
+        ThreadProfiler.register(aiThread, aiThread.getName());
         aiThread.start();
     }
 
@@ -174,6 +197,84 @@ public class Player implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        LockSupport.unpark(playerThread);
+        Thread aiThread = this.aiThread;
+        if (aiThread != null) aiThread.interrupt(); // also wakes up a strategy that waits before a press
+    }
+
+    /**
+     * Called by the dealer thread when the player placed its last token. The player thread tests the cards of its
+     * tokens in the snapshot, so the dealer does not have to.
+     *
+     * @param snapshot - the snapshot of the table with the player's last token.
+     */
+    void claimSet(TableSnapshot snapshot) {
+        claim = snapshot;
+        LockSupport.unpark(playerThread);
+    }
+
+    /**
+     * Tests the cards of the player's tokens in the snapshot of its claim, and wakes the dealer up to check it.
+     *
+     * @param claim - the snapshot of the table the set was claimed in.
+     */
+    private void verifyClaim(TableSnapshot claim) {
+        int cards = 0;
+        for (int slot = 0; slot < claim.slots() && cards < claimCards.length; slot++)
+            if (claim.hasToken(id, slot)) claimCards[cards++] = claim.card(slot);
+        legal = cards == claimCards.length && env.util.testSet(claimCards);
+        verified = claim;
+        dealer.wakeUp();
+    }
+
+    /**
+     * @return - the snapshot of the table the player verified its claimed set in, or null if it did not verify it yet.
+     */
+    TableSnapshot verifiedClaim() {
+        TableSnapshot claim = this.claim;
+        return claim != null && verified == claim ? claim : null;
+    }
+
+    /**
+     * @return - true iff the cards of the verified claim form a legal set (see verifiedClaim).
+     */
+    boolean claimLegal() {
+        return legal;
+    }
+
+    /**
+     * Called by the dealer when it is done with the player's set. The dealer drops the player's key presses until the
+     * player handles the answer.
+     *
+     * @param verdict - the dealer's answer.
+     */
+    void dealerAnswered(Verdict verdict) {
+        claim = null;
+        this.verdict = verdict;
+        LockSupport.unpark(playerThread);
+    }
+
+    /**
+     * @return - true iff the player claimed a set that the dealer did not answer yet, or the dealer answered it and
+     *           the player did not handle the answer yet.
+     */
+    boolean awaitingAnswer() {
+        return claim != null || verdict != null;
+    }
+
+    /**
+     * Called by the dealer thread when it took a key press of the player, so the AI can make another one.
+     */
+    void keyPressTaken() {
+        if (!human) LockSupport.unpark(aiThread);
+    }
+
+    /**
+     * Called by the dealer thread to drop the player's pending key presses.
+     */
+    void discardKeyPresses() {
+        playerActions.clear();
+        keyPressTaken(); // the AI may be waiting for room in the queue
     }
 
     /**
@@ -182,47 +283,59 @@ public class Player implements Runnable {
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
-        synchronized(table){
-            synchronized(playerActions){
-                if(table.slotToCard[slot] != null){
-                    this.playerActions.add(slot);
-                }  
-            }
-        }
+        keyPressed(slot, System.nanoTime());
     }
 
     /**
-     * Award a point to a player and perform other related actions.
+     * This method is called when a key is pressed. It never blocks, so it is safe to call from the ui thread.
+     *
+     * @param slot      - the slot corresponding to the key pressed.
+     * @param pressTime - the time the key was pressed (System.nanoTime).
+     */
+    public void keyPressed(int slot, long pressTime) {
+        if (pressTime - frozenUntil < 0) return; // the player is frozen
+        playerActions.offer(slot, pressTime); // the slot is checked by the dealer thread, a full queue drops the press
+    }
+
+    /**
+     * Award a point to a player and perform other related actions. Called by the dealer thread when it accepts the
+     * player's set, after it removed the cards of the set (and the tokens on them).
      *
      * @post - the player's score is increased by 1.
      * @post - the player's score is updated in the ui.
      */
     public void point() {
-        removeTokens();
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
         env.ui.setScore(id, ++score);
-        try {
-            for(long i = env.config.pointFreezeMillis/1000; 0< i; i--){
-                env.ui.setFreeze(id, i * 1000);
-                Thread.sleep(1000); // sleep for 3 seconds
-            }
-        } catch (InterruptedException e) {}
-        env.ui.setFreeze(id, 0);
-        foundSet = false;
+        freeze(env.config.pointFreezeMillis);
     }
 
     /**
-     * Penalize a player and perform other related actions.
+     * Penalize a player and perform other related actions. Called by the dealer thread when it rejects the player's
+     * set, after it removed the player's tokens.
      */
     public void penalty() {
-        removeTokens();
-        try {
-            for(long i = env.config.penaltyFreezeMillis/1000; 0< i; i--){ // sleep for a few seconds
-                env.ui.setFreeze(id, i * 1000);
-                Thread.sleep(1000); // sleep for 3 seconds
-            }
-        } catch (InterruptedException e) {}
-        env.ui.setFreeze(id, 0);
+        freeze(env.config.penaltyFreezeMillis);
+    }
+
+    /**
+     * Freezes the player: key presses are dropped until the freeze time passes. The player's thread is not blocked,
+     * and the ui counts the remaining freeze time down by itself.
+     *
+     * @param millis - the freeze time in milliseconds.
+     */
+    private void freeze(long millis) {
+        if (millis <= 0) return;
+        frozenUntil = System.nanoTime() + millis * 1_000_000;
+        playerActions.clear(); // key presses that were made before the freeze
+        env.ui.setFreezeDeadline(id, System.currentTimeMillis() + millis);
+    }
+
+    /**
+     * @return - the remaining freeze time of the player in milliseconds (0 or less if not frozen).
+     */
+    public long freezeRemainingMillis() {
+        return (frozenUntil - System.nanoTime()) / 1_000_000;
     }
 
     public int score() {
@@ -230,22 +343,33 @@ public class Player implements Runnable {
     }
 
     /**
-     * removes the player tokens and empties the queue.
-     * 
-     * @post - the tables doesn't display the player tokens
-     * @post - queuePlayerTokens is empty
+     * Restores the state of the player from a checkpointed game (the dealer restores the player's tokens). Must be
+     * called before the player thread starts.
+     *
+     * @param score        - the player's score.
+     * @param freezeMillis - the player's remaining freeze time.
      */
-    public void removeTokens(){
-        synchronized(table){
-            synchronized(queuePlayerTokens){
-                while(!queuePlayerTokens.isEmpty()){
-                    table.removeToken(id, queuePlayerTokens.remove());
-                }
-            }
-            synchronized(playerActions){
-                this.playerActions.clear();
-            }
-        }
-        
+    void restore(int score, long freezeMillis) {
+        this.score = score;
+        env.ui.setScore(id, score);
+        freeze(freezeMillis);
+    }
+
+    /**
+     * @return - the number of key presses generated by the player's strategy.
+     */
+    public long decisions() {
+        return decisions;
+    }
+
+    /**
+     * Called by the dealer thread when it placed a token of the player.
+     *
+     * @param nanos - the time from the key press to the placement of the token.
+     */
+    void recordPressToToken(long nanos) {
+        tokensPlaced++;
+        totalPressToTokenNanos += nanos;
+        maxPressToTokenNanos = Math.max(maxPressToTokenNanos, nanos);
     }
 }
\ No newline at end of file
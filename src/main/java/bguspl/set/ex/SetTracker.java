@@ -0,0 +1,223 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+import bguspl.set.Util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class keeps track of the legal sets among a group of cards (e.g. the cards on the table). The sets are
+ * updated incrementally as cards are added and removed, in O(cards) per change for sets of 3 cards.
+ *
+ * The sets are kept in primitive arrays that grow to the most sets tracked at once and are then reused, so adding and
+ * removing cards does not allocate.
+ *
+ * @inv position[cards[i]] == i for 0 <= i < size
+ * @inv ids[0..count) are exactly the legal sets among cards[0..size), and ids[order[id]] == id for every set id
+ * @inv setsWith[card][0..setsWithCount[card]) are exactly the sets in ids[0..count) that the card is part of
+ */
+public class SetTracker {
+
+    private final Util util;
+
+    /**
+     * The number of cards in a set.
+     */
+    private final int setSize;
+
+    /**
+     * The tracked cards are cards[0..size), in no particular order.
+     */
+    private final int[] cards;
+    private int size;
+
+    /**
+     * The index of each card in the cards array (-1 if the card is not tracked).
+     */
+    private final int[] position;
+
+    /**
+     * The cards of each set, sorted: the set with id s is setCards[s * setSize .. (s + 1) * setSize).
+     */
+    private int[] setCards;
+
+    /**
+     * The ids of the legal sets are ids[0..count), and the ids that are free to reuse are ids[count..allocated). The
+     * index of each id in ids is order[id].
+     */
+    private int[] ids;
+    private int[] order;
+    private int count;
+    private int allocated;
+
+    /**
+     * The ids of the sets each card is part of: setsWith[card][0..setsWithCount[card]) (null until the card is part of
+     * a set).
+     */
+    private final int[][] setsWith;
+    private final int[] setsWithCount;
+
+    /**
+     * Preallocated buffers for enumerating the sets a card takes part in.
+     */
+    private final int[] combination;
+    private final int[] others;
+
+    /**
+     * @param env      - the game environment object.
+     * @param capacity - the maximal number of tracked cards.
+     */
+    public SetTracker(Env env, int capacity) {
+        this.util = env.util;
+        this.setSize = env.config.featureSize;
+        this.cards = new int[capacity];
+        this.position = new int[env.config.deckSize];
+        Arrays.fill(position, -1);
+        this.setsWith = new int[env.config.deckSize][];
+        this.setsWithCount = new int[env.config.deckSize];
+        int initialSets = Math.max(capacity, 8);
+        this.setCards = new int[initialSets * setSize];
+        this.ids = new int[initialSets];
+        this.order = new int[initialSets];
+        this.combination = new int[Math.max(setSize - 2, 0)];
+        this.others = new int[Math.max(setSize - 1, 0)];
+    }
+
+    /**
+     * Starts tracking a card.
+     * @param card - the card to add.
+     *
+     * @pre - the card is not tracked.
+     */
+    public void add(int card) {
+        findSetsWith(card);
+        position[card] = size;
+        cards[size++] = card;
+    }
+
+    /**
+     * Stops tracking a card.
+     * @param card - the card to remove.
+     *
+     * @pre - the card is tracked.
+     */
+    public void remove(int card) {
+        int index = position[card];
+        cards[index] = cards[--size];
+        position[cards[index]] = index;
+        position[card] = -1;
+
+        for (int i = 0; i < setsWithCount[card]; i++) {
+            int set = setsWith[card][i];
+            for (int j = set * setSize; j < (set + 1) * setSize; j++)
+                if (setCards[j] != card) unlink(setCards[j], set);
+            freeSet(set);
+        }
+        setsWithCount[card] = 0;
+    }
+
+    /**
+     * @return - the number of legal sets among the tracked cards.
+     */
+    public int sets() {
+        return count;
+    }
+
+    /**
+     * @return - a copy of the legal sets among the tracked cards (each one a sorted array of card ids).
+     */
+    public List<int[]> snapshot() {
+        List<int[]> snapshot = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            snapshot.add(Arrays.copyOfRange(setCards, ids[i] * setSize, (ids[i] + 1) * setSize));
+        return snapshot;
+    }
+
+    /**
+     * Finds the sets a card forms with the tracked cards and adds them: for every combination of setSize - 2
+     * tracked cards, the card that completes it is unique, so it only has to be looked up.
+     *
+     * @param card - a card that is not tracked.
+     */
+    private void findSetsWith(int card) {
+        int r = setSize - 2;
+        int n = size;
+        if (r < 1 || n < r + 1) return;
+
+        for (int i = 0; i < r; ++i)
+            combination[i] = i;
+        others[r] = card;
+
+        while (combination[r - 1] < n) {
+            int max = -1;
+            for (int i = 0; i < r; ++i) {
+                others[i] = cards[combination[i]];
+                max = Math.max(max, others[i]);
+            }
+            // each set is found once - when its completing card is the largest of the tracked ones
+            int completing = util.completeSet(others);
+            if (completing > max && completing != card && position[completing] >= 0)
+                addSet(completing);
+
+            // generate next combination in lexicographic order
+            int t = r - 1;
+            while (t != 0 && combination[t] == n - r + t) --t;
+            combination[t]++;
+            for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
+        }
+    }
+
+    /**
+     * Adds the set of the cards in others and the completing card.
+     */
+    private void addSet(int completing) {
+        if (count == allocated) {
+            if (allocated == ids.length) {
+                ids = Arrays.copyOf(ids, allocated * 2);
+                order = Arrays.copyOf(order, allocated * 2);
+                setCards = Arrays.copyOf(setCards, allocated * 2 * setSize);
+            }
+            ids[allocated] = allocated;
+            order[allocated] = allocated;
+            allocated++;
+        }
+        int set = ids[count++];
+        int base = set * setSize;
+        System.arraycopy(others, 0, setCards, base, setSize - 1);
+        setCards[base + setSize - 1] = completing;
+        Arrays.sort(setCards, base, base + setSize);
+        for (int i = base; i < base + setSize; i++)
+            link(setCards[i], set);
+    }
+
+    /**
+     * Moves a set's id past the ids of the legal sets, so it is reused by the next set added.
+     */
+    private void freeSet(int set) {
+        int index = order[set];
+        int last = ids[--count];
+        ids[index] = last;
+        order[last] = index;
+        ids[count] = set;
+        order[set] = count;
+    }
+
+    private void link(int card, int set) {
+        int[] sets = setsWith[card];
+        if (sets == null) sets = setsWith[card] = new int[4];
+        else if (setsWithCount[card] == sets.length) sets = setsWith[card] = Arrays.copyOf(sets, sets.length * 2);
+        sets[setsWithCount[card]++] = set;
+    }
+
+    private void unlink(int card, int set) {
+        int[] sets = setsWith[card];
+        for (int i = 0; i < setsWithCount[card]; i++) {
+            if (sets[i] == set) {
+                sets[i] = sets[--setsWithCount[card]];
+                return;
+            }
+        }
+    }
+}
@@ -2,13 +2,18 @@ package bguspl.set.ex;
 
 import bguspl.set.Env;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
- * This class contains the data that is visible to the player.
+ * This class contains the data that is visible to the player. It is changed only by the dealer thread (so it takes no
+ * locks), and the other threads read it through snapshot(). The methods that change or read the table itself are
+ * package-private, for the dealer.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
  */
@@ -29,13 +34,38 @@ public class Table {
      */
     protected final Integer[] cardToSlot; // slot per card (if any)
 
+    /**
+     * The slots that have a card in them, and the number of cards on the table. Kept along with slotToCard, so finding
+     * an empty slot and counting the cards do not scan the table.
+     */
+    private final BitSet occupied;
+    private int cardCount;
 
-    // tokens
-    public Integer[][] playerTokens;
-    // private int[] firstPlayerTokens = new int[]{-1, -1, -1};
-    // private int tokensPlacedByFirst = 0;
-    // private int[] secondPlayerTokens = new int[]{-1, -1, -1};
-    // private int tokensPlacedBySecond = 0;
+    /**
+     * The tokens on each slot: a bitmask of the players, in words consecutive longs per slot (copied to the snapshots).
+     */
+    private final int words;
+    private final long[] tokenBits;
+
+    /**
+     * Keeps track of the legal sets among the cards on the table.
+     */
+    private final SetTracker sets;
+
+    /**
+     * The view of the table published after every change (copy on write), and the number of changes made.
+     */
+    private volatile TableSnapshot snapshot;
+    private long version;
+
+    /**
+     * The thread printing the hints to the console (shared by all tables), so the dealer does not wait for it.
+     */
+    private static final ExecutorService hintsPrinter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hints-printer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Constructor for testing.
@@ -49,7 +79,17 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        this.playerTokens = makeDefaultarray();
+        this.sets = new SetTracker(env, slotToCard.length);
+        this.occupied = new BitSet(slotToCard.length);
+        for (int slot = 0; slot < slotToCard.length; slot++) {
+            if (slotToCard[slot] == null) continue;
+            sets.add(slotToCard[slot]);
+            occupied.set(slot);
+            cardCount++;
+        }
+        this.words = (env.config.players + 63) >>> 6;
+        this.tokenBits = new long[slotToCard.length * words];
+        publish(true, true);
     }
 
     /**
@@ -63,38 +103,115 @@ public class Table {
     }
 
     /**
-     * This method prints all possible legal sets of cards that are currently on the table.
+     * This method prints all possible legal sets of cards that are currently on the table. The sets are kept up to
+     * date as cards are placed and removed, and they are printed in the background.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
-            StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
-            System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));
+        TableSnapshot snapshot = this.snapshot;
+        List<int[]> sets = snapshot.sets();
+        List<int[]> slots = new ArrayList<>(sets.size());
+        for (int[] set : sets) {
+            int[] setSlots = new int[set.length];
+            for (int i = 0; i < set.length; i++)
+                setSlots[i] = snapshot.slotOf(set[i]);
+            Arrays.sort(setSlots);
+            slots.add(setSlots);
+        }
+        hintsPrinter.execute(() -> {
+            for (int i = 0; i < sets.size(); i++) {
+                StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
+                int[][] features = env.util.cardsToFeatures(sets.get(i));
+                System.out.println(sb.append("slots: ").append(Arrays.toString(slots.get(i))).append(" features: ").append(Arrays.deepToString(features)));
+            }
         });
     }
 
+    /**
+     * Returns the current view of the table. It never blocks, and the view is consistent (cards, tokens and sets are
+     * all of the same moment).
+     *
+     * @return - the latest snapshot of the table.
+     */
+    public TableSnapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the legal sets among the cards currently on the table (without searching for them).
+     *
+     * @return - a list of sets, each one a sorted array of card ids (shared, must not be modified).
+     */
+    public List<int[]> currentSets() {
+        return snapshot.sets();
+    }
+
     /**
      * Count the number of cards currently on the table.
      *
      * @return - the number of cards on the table.
      */
-    public synchronized int countCards() {
-        int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
-                cards++;
-        return cards;
+    public int countCards() {
+        return snapshot.cards();
     }
 
-    public synchronized int avaliableSlot(){
-        for (int i = 0 ; i < slotToCard.length ; i++){
-            if (slotToCard[i] == null){
-                return i;
-            }
-        }
-        return -1;
+    /**
+     * Count the number of legal sets among the cards currently on the table.
+     *
+     * @return - the number of sets on the table.
+     */
+    public int countSets() {
+        return snapshot.sets().size();
+    }
+
+    /**
+     * Checks whether a player has a token on a grid slot.
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot to check.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return snapshot.hasToken(player, slot);
+    }
+
+    /**
+     * Checks whether a player has a token on a grid slot, in the table itself rather than in its snapshot.
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot to check.
+     * @return       - true iff the player has a token on the slot.
+     */
+    boolean tokenPlaced(int player, int slot) {
+        return (tokenBits[slot * words + (player >>> 6)] & 1L << player) != 0;
+    }
+
+    /**
+     * @return - the first empty slot, or -1 if the table is full.
+     */
+    int avaliableSlot(){
+        return nextEmptySlot(0);
+    }
+
+    /**
+     * @param from - the slot to start looking from.
+     * @return - the first empty slot from the given one, or -1 if there is none.
+     */
+    int nextEmptySlot(int from) {
+        int slot = occupied.nextClearBit(from);
+        return slot < slotToCard.length ? slot : -1;
+    }
+
+    /**
+     * @param from - the slot to start looking from.
+     * @return - the first slot with a card from the given one, or -1 if there is none.
+     */
+    int nextCardSlot(int from) {
+        return occupied.nextSetBit(from);
+    }
+
+    /**
+     * @return - true iff there is a card in every slot.
+     */
+    boolean isFull() {
+        return cardCount == slotToCard.length;
     }
 
     /**
@@ -104,14 +221,13 @@ public class Table {
      *
      * @post - the card placed is on the table, in the assigned slot.
      */
-    public synchronized void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
+    void placeCard(int card, int slot) {
         // place card in the arrays
+        occupy(slot);
         cardToSlot[card] = slot;
         slotToCard[slot] = card;
+        sets.add(card);
+        publish(true, false);
 
         // place card - UI
         env.ui.placeCard(card, slot);
@@ -121,29 +237,77 @@ public class Table {
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
-    public synchronized void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
+    void removeCard(int slot) {
         int card  = slotToCard[slot];
         cardToSlot[card] = null;
         slotToCard[slot] = null;
+        occupied.clear(slot);
+        cardCount--;
+        sets.remove(card);
         for(int i = 0; i<env.config.players; i++){          //remove the all players tokens from the card
             this.removeToken(i, slot);
         }
+        publish(true, false);
         // UI should update - remove the card
         env.ui.removeCard(slot);
     }
 
+    /**
+     * Places cards on the table in a single state change. The ui is updated once for all the cards (and it is up to
+     * the ui to show them one after the other), so the cards can be played as soon as this method returns.
+     * @param cards - the card ids to place.
+     * @param slots - the slots in which the cards should be placed, respectively.
+     *
+     * @post - the cards are on the table, in the assigned slots.
+     */
+    void placeCards(int[] cards, int[] slots) {
+        if (cards.length == 0) return;
+        for (int i = 0; i < cards.length; i++) {
+            occupy(slots[i]);
+            cardToSlot[cards[i]] = slots[i];
+            slotToCard[slots[i]] = cards[i];
+            sets.add(cards[i]);
+        }
+        publish(true, false);
+        env.ui.placeCards(cards, slots);
+    }
+
+    /**
+     * Removes cards (and the tokens placed on them) from the table in a single state change.
+     * @param slots - the slots from which to remove the cards.
+     *
+     * @post - the slots are empty and have no tokens on them.
+     */
+    void removeCards(int[] slots) {
+        if (slots.length == 0) return;
+        for (int slot : slots) {
+            int card = slotToCard[slot];
+            cardToSlot[card] = null;
+            slotToCard[slot] = null;
+            occupied.clear(slot);
+            cardCount--;
+            sets.remove(card);
+            boolean hadTokens = false;
+            for (int word = slot * words; word < (slot + 1) * words; word++) {
+                hadTokens |= tokenBits[word] != 0;
+                tokenBits[word] = 0;
+            }
+            if (hadTokens) env.ui.removeTokens(slot);
+        }
+        publish(true, true);
+        env.ui.removeCards(slots);
+    }
+
     /**
      * Places a player token on a grid slot.
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    public synchronized void placeToken(int player, int slot) {
+    void placeToken(int player, int slot) {
         // place token - UI
         env.ui.placeToken(player, slot);
-        playerTokens[slot][player] = player;
+        tokenBits[slot * words + (player >>> 6)] |= 1L << player;
+        publish(false, true);
 
     }
 
@@ -153,21 +317,67 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return       - true iff a token was successfully removed.
      */
-    public synchronized boolean removeToken(int player, int slot) {
+    boolean removeToken(int player, int slot) {
         // remove token - UI
-        boolean placedToken = (playerTokens[slot][player] == player);
+        boolean placedToken = tokenPlaced(player, slot);
         env.ui.removeToken(player, slot);
-        this.playerTokens[slot][player] = -1;
+        tokenBits[slot * words + (player >>> 6)] &= ~(1L << player);
+        if (placedToken) publish(false, true);
         return placedToken;
     }
 
-    private synchronized Integer[][] makeDefaultarray(){
-        playerTokens = new Integer[env.config.tableSize][env.config.players];
-        for (int i = 0; i < env.config.tableSize; i++){
-            for (int j = 0; j < env.config.players; j++){
-                playerTokens[i][j] = -1;
-            }
+    /**
+     * Removes tokens of a player in a single state change.
+     * @param player - the player the tokens belong to.
+     * @param slots  - the slots from which to remove the tokens are slots[0..count).
+     * @param count  - the number of tokens to remove.
+     */
+    void removeTokens(int player, int[] slots, int count) {
+        boolean removed = false;
+        for (int i = 0; i < count; i++) {
+            removed |= tokenPlaced(player, slots[i]);
+            env.ui.removeToken(player, slots[i]);
+            tokenBits[slots[i] * words + (player >>> 6)] &= ~(1L << player);
+        }
+        if (removed) publish(false, true);
+    }
+
+    /**
+     * Marks a slot as occupied before a card is placed in it. A card that was in the slot is taken off the table.
+     */
+    private void occupy(int slot) {
+        Integer previous = slotToCard[slot];
+        if (previous != null) {
+            cardToSlot[previous] = null;
+            sets.remove(previous);
+        } else {
+            occupied.set(slot);
+            cardCount++;
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the table. Must be called after every change. The parts of the
+     * table that did not change are shared with the last snapshot.
+     * @param cardsChanged  - true iff cards were placed or removed.
+     * @param tokensChanged - true iff tokens were placed or removed.
+     */
+    private void publish(boolean cardsChanged, boolean tokensChanged) {
+        TableSnapshot last = snapshot;
+        int[] cards;
+        List<int[]> sets;
+        if (cardsChanged || last == null) {
+            cards = new int[slotToCard.length];
+            Arrays.fill(cards, -1);
+            for (int slot = occupied.nextSetBit(0); slot >= 0; slot = occupied.nextSetBit(slot + 1))
+                cards[slot] = slotToCard[slot];
+            sets = Collections.unmodifiableList(this.sets.snapshot());
+        } else {
+            cards = last.slotToCard;
+            sets = last.sets();
         }
-        return playerTokens;
+        long[] tokens = tokensChanged || last == null ? tokenBits.clone() : last.tokens;
+        long cardsVersion = cardsChanged || last == null ? version + 1 : last.cardsVersion();
+        snapshot = new TableSnapshot(++version, cardsVersion, cards, cardCount, tokens, words, sets);
     }
 }
@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import java.util.List;
+
+/**
+ * An immutable view of the table, published by the table after every change. Readers (e.g. AI strategies, hints)
+ * get a consistent view of the cards, tokens and sets while the dealer thread changes the table.
+ */
+public class TableSnapshot {
+
+    /**
+     * The number of changes made to the table before this snapshot.
+     */
+    private final long version;
+
+    /**
+     * The version of the snapshot the cards last changed in: snapshots with the same cards version have the same cards
+     * in the same slots (only their tokens may differ).
+     */
+    private final long cardsVersion;
+
+    /**
+     * The card in each slot (-1 if none), and the number of cards on the table. The arrays may be shared with the next
+     * snapshots of the table (if they did not change), so they are never modified.
+     */
+    final int[] slotToCard;
+    private final int cards;
+
+    /**
+     * The tokens on each slot: a bitmask of the players, in words consecutive longs per slot.
+     */
+    final long[] tokens;
+    private final int words;
+
+    /**
+     * The legal sets among the cards on the table (each one a sorted array of card ids).
+     */
+    private final List<int[]> sets;
+
+    TableSnapshot(long version, long cardsVersion, int[] slotToCard, int cards, long[] tokens, int words, List<int[]> sets) {
+        this.version = version;
+        this.cardsVersion = cardsVersion;
+        this.slotToCard = slotToCard;
+        this.cards = cards;
+        this.tokens = tokens;
+        this.words = words;
+        this.sets = sets;
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public long cardsVersion() {
+        return cardsVersion;
+    }
+
+    /**
+     * @return - the number of slots on the table.
+     */
+    public int slots() {
+        return slotToCard.length;
+    }
+
+    /**
+     * @param slot - a grid slot.
+     * @return - the card in the slot, or -1 if the slot is empty.
+     */
+    public int card(int slot) {
+        return slotToCard[slot];
+    }
+
+    /**
+     * @param card - a card id.
+     * @return - the slot the card is in, or -1 if it is not on the table.
+     */
+    public int slotOf(int card) {
+        for (int slot = 0; slot < slotToCard.length; slot++)
+            if (slotToCard[slot] == card) return slot;
+        return -1;
+    }
+
+    /**
+     * @return - the number of cards on the table.
+     */
+    public int cards() {
+        return cards;
+    }
+
+    /**
+     * @param player - the player the token belongs to.
+     * @param slot   - the slot to check.
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot) {
+        return (tokens[slot * words + (player >>> 6)] & (1L << player)) != 0;
+    }
+
+    /**
+     * @return - the legal sets among the cards on the table. The list and its arrays are shared and must not be
+     *           modified.
+     */
+    public List<int[]> sets() {
+        return sets;
+    }
+}
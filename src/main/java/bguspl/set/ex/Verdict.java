@@ -0,0 +1,23 @@
+package bguspl.set.ex;
+
+/**
+ * The dealer's answer to a player that claimed a set.
+ */
+public enum Verdict {
+
+    /**
+     * The cards form a legal set: the player gets a point.
+     */
+    SET,
+
+    /**
+     * The cards do not form a legal set: the player is penalized.
+     */
+    NOT_A_SET,
+
+    /**
+     * Some of the cards were removed before the claim was checked (taken by an earlier set, or collected by the
+     * dealer): the player gets neither a point nor a penalty.
+     */
+    SET_TAKEN
+}
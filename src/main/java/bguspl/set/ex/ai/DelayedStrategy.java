@@ -0,0 +1,43 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.ex.Table;
+
+import java.util.SplittableRandom;
+
+/**
+ * Wraps another strategy and adds a human-like reaction time before every press.
+ */
+public class DelayedStrategy implements Strategy {
+
+    /**
+     * The range (in milliseconds) of the reaction time before each press.
+     */
+    private static final long MIN_REACTION_MILLIS = 300;
+    private static final long MAX_REACTION_MILLIS = 1200;
+
+    private final Strategy strategy;
+    private final SplittableRandom random;
+
+    public DelayedStrategy(Strategy strategy, SplittableRandom random) {
+        this.strategy = strategy;
+        this.random = random;
+    }
+
+    /**
+     * Waits for the reaction time after the wrapped strategy chose a slot. The wait ends early when the thread is
+     * interrupted (the player interrupts its AI thread when the game terminates), and then nothing is pressed.
+     */
+    @Override
+    public int nextPress(Table table, int player) {
+        int slot = strategy.nextPress(table, player);
+        if (slot >= 0) {
+            try {
+                Thread.sleep(MIN_REACTION_MILLIS + random.nextLong(MAX_REACTION_MILLIS - MIN_REACTION_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return -1;
+            }
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,87 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Table;
+import bguspl.set.ex.TableSnapshot;
+
+import java.util.List;
+
+/**
+ * Looks for a legal set on the table and presses its slots as fast as possible.
+ */
+public class GreedyStrategy implements Strategy {
+
+    /**
+     * The number of milliseconds after which a plan that did not lead to a claim is recalculated
+     * (e.g. when a press was dropped because its slot was empty at the time).
+     */
+    private static final long STALE_PLAN_MILLIS = 500;
+
+    /**
+     * The slots and cards of the set the strategy is currently going for (null if none).
+     */
+    private int[] targetSlots;
+    private int[] targetCards;
+
+    /**
+     * The presses planned for reaching the target, and the index of the next one.
+     */
+    private final int[] plan;
+    private int planned;
+    private int next;
+    private long plannedAt;
+
+    public GreedyStrategy(Env env) {
+        this.plan = new int[env.config.tableSize];
+    }
+
+    @Override
+    public int nextPress(Table table, int player) {
+        TableSnapshot snapshot = table.snapshot(); // cards, tokens and sets of the same moment, without locking
+        if (targetChanged(snapshot) || (next == planned && System.currentTimeMillis() - plannedAt > STALE_PLAN_MILLIS))
+            plan(snapshot, player);
+        return next < planned ? plan[next++] : -1;
+    }
+
+    /**
+     * Checks whether the cards of the target set are no longer in their slots.
+     */
+    private boolean targetChanged(TableSnapshot snapshot) {
+        if (targetSlots == null) return true;
+        for (int i = 0; i < targetSlots.length; i++)
+            if (snapshot.card(targetSlots[i]) != targetCards[i])
+                return true;
+        return false;
+    }
+
+    /**
+     * Picks a set on the table and plans the presses needed for claiming it: first removing the player's tokens
+     * that are not part of the set, then placing tokens on the set slots that do not have one yet.
+     */
+    private void plan(TableSnapshot snapshot, int player) {
+        planned = next = 0;
+        plannedAt = System.currentTimeMillis();
+        targetSlots = targetCards = null;
+
+        List<int[]> sets = snapshot.sets();
+        if (sets.isEmpty()) return;
+
+        int[] cards = sets.get(0);
+        int[] cardSlots = new int[cards.length];
+        for (int i = 0; i < cards.length; i++)
+            cardSlots[i] = snapshot.slotOf(cards[i]);
+        targetCards = cards;
+        targetSlots = cardSlots;
+
+        for (int slot = 0; slot < snapshot.slots(); slot++)
+            if (snapshot.hasToken(player, slot) && !isTarget(slot)) plan[planned++] = slot;
+        for (int slot : targetSlots)
+            if (!snapshot.hasToken(player, slot)) plan[planned++] = slot;
+    }
+
+    private boolean isTarget(int slot) {
+        for (int target : targetSlots)
+            if (target == slot) return true;
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Table;
+
+import java.util.SplittableRandom;
+
+/**
+ * Presses random slots (this is a very, very smart AI).
+ */
+public class RandomStrategy implements Strategy {
+
+    private final Env env;
+    private final SplittableRandom random;
+
+    public RandomStrategy(Env env, SplittableRandom random) {
+        this.env = env;
+        this.random = random;
+    }
+
+    @Override
+    public int nextPress(Table table, int player) {
+        return random.nextInt(env.config.tableSize);
+    }
+}
@@ -0,0 +1,44 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.Env;
+import bguspl.set.ex.Table;
+
+import java.util.SplittableRandom;
+
+/**
+ * This interface is implemented by the AI strategies driving the computer players.
+ * A strategy observes the table state and decides which slot the player should press next.
+ */
+public interface Strategy {
+
+    /**
+     * Observes the table and chooses the next slot to press. A strategy that waits must stop waiting when its thread
+     * is interrupted, which is how the player stops its AI thread when the game terminates.
+     *
+     * @param table  - the table to observe.
+     * @param player - the id of the player pressing the keys.
+     * @return - the slot to press, or -1 if there is nothing to press right now.
+     */
+    int nextPress(Table table, int player);
+
+    /**
+     * Creates a built-in strategy by its name.
+     *
+     * @param name   - the strategy name (random, greedy or delayed).
+     * @param env    - the game environment object.
+     * @param random - the strategy's source of randomness.
+     * @return - a new strategy instance (strategies keep state, so every player needs its own).
+     */
+    static Strategy create(String name, Env env, SplittableRandom random) {
+        switch (name.trim().toLowerCase()) {
+            case "random":
+                return new RandomStrategy(env, random);
+            case "greedy":
+                return new GreedyStrategy(env);
+            case "delayed":
+                return new DelayedStrategy(new GreedyStrategy(env), random);
+            default:
+                throw new IllegalArgumentException("unknown strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.ThreadProfiler;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameResults;
+import bguspl.set.ex.Leaderboard;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Plays many headless games between AI strategies in parallel and prints their win rates and throughput.
+ * Usage: Tournament [games] [strategy...] (defaults to 100 games between random, greedy and delayed).
+ */
+public class Tournament {
+
+    /**
+     * The accumulated results of a single strategy.
+     */
+    private static class Standing {
+        private int seats;
+        private double wins; // a draw is split between the winners
+        private long score;
+        private long decisions;
+        private long millis;
+    }
+
+    private final Properties properties;
+    private final String[] strategies;
+    private final Map<String, Standing> standings = new LinkedHashMap<>();
+
+    /**
+     * The cumulative standings of the strategies across tournaments (null if there is no leaderboard).
+     */
+    private final Leaderboard leaderboard;
+
+    /**
+     * The store the results of the games are added to (null if they are not stored).
+     */
+    private final GameResults results;
+
+    public Tournament(Properties properties, String[] strategies, Leaderboard leaderboard, GameResults results) {
+        this.properties = properties;
+        this.strategies = strategies;
+        this.leaderboard = leaderboard;
+        this.results = results;
+        for (String strategy : strategies)
+            standings.putIfAbsent(strategy, new Standing());
+    }
+
+    /**
+     * Plays a single headless game. The seats are rotated between games so no strategy always plays first.
+     *
+     * @param game - the game number.
+     */
+    private void playGame(int game) {
+        int n = strategies.length;
+        String[] seats = new String[n];
+        Arrays.setAll(seats, i -> strategies[(i + game) % n]);
+
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.setProperty("LogLevel", "OFF");
+        gameProperties.setProperty("HumanPlayers", "0");
+        gameProperties.setProperty("ComputerPlayers", Integer.toString(n));
+        gameProperties.setProperty("ComputerStrategies", String.join(",", seats));
+        gameProperties.setProperty("PlayerNames", String.join(",", seats));
+        gameProperties.setProperty("Hints", "False");
+        gameProperties.setProperty("TableDelaySeconds", "0");
+        gameProperties.setProperty("EndGamePauseSeconds", "0");
+        gameProperties.setProperty("CheckpointFile", "");
+        if (!properties.getProperty("Seed", "").trim().isEmpty()) // every game gets its own seed, derived from the given one
+            gameProperties.setProperty("Seed", Long.toString(Long.parseLong(properties.getProperty("Seed").trim()) + game));
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, gameProperties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+
+        Player[] players = new Player[n];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players, leaderboard, results);
+        for (int i = 0; i < n; i++)
+            players[i] = new Player(env, dealer, table, i, false, Strategy.create(seats[i], env, config.random("player-" + i)));
+
+        long start = System.currentTimeMillis();
+        dealer.run();
+        long millis = System.currentTimeMillis() - start;
+
+        int maxScore = Arrays.stream(players).mapToInt(Player::score).max().orElse(0);
+        long winners = Arrays.stream(players).filter(player -> player.score() == maxScore).count();
+        synchronized (standings) {
+            for (int i = 0; i < n; i++) {
+                Standing standing = standings.get(seats[i]);
+                standing.seats++;
+                standing.score += players[i].score();
+                standing.decisions += players[i].decisions();
+                standing.millis += millis;
+                if (players[i].score() == maxScore) standing.wins += 1.0 / winners;
+            }
+        }
+    }
+
+    /**
+     * Plays the games on all available cores and waits for them to finish.
+     *
+     * @param games - the number of games to play.
+     */
+    public void play(int games) throws InterruptedException, ExecutionException {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<?>> results = new ArrayList<>(games);
+            for (int game = 0; game < games; game++) {
+                int g = game;
+                results.add(pool.submit(() -> playGame(g)));
+            }
+            for (Future<?> result : results)
+                result.get();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param strategy - a strategy of the tournament.
+     * @return - the number of seats the strategy played.
+     */
+    int seats(String strategy) {
+        synchronized (standings) {
+            return standings.get(strategy).seats;
+        }
+    }
+
+    /**
+     * @param strategy - a strategy of the tournament.
+     * @return - the number of games the strategy won (a draw is split between the winners).
+     */
+    double wins(String strategy) {
+        synchronized (standings) {
+            return standings.get(strategy).wins;
+        }
+    }
+
+    /**
+     * Prints the win rate and decisions per second table of the strategies.
+     */
+    public void printStandings(int games) {
+        System.out.printf("%-12s %8s %10s %10s %10s %14s%n", "strategy", "seats", "wins", "win rate", "avg score", "decisions/sec");
+        synchronized (standings) {
+            standings.forEach((name, standing) -> System.out.printf("%-12s %8d %10.1f %9.1f%% %10.2f %14.1f%n",
+                    name,
+                    standing.seats,
+                    standing.wins,
+                    100.0 * standing.wins / Math.max(standing.seats, 1),
+                    (double) standing.score / Math.max(standing.seats, 1),
+                    1000.0 * standing.decisions / Math.max(standing.millis, 1)));
+        }
+        System.out.println(games + " games played.");
+    }
+
+    public static void main(String[] args) throws InterruptedException, ExecutionException, IOException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        String[] strategies = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[]{"random", "greedy", "delayed"};
+
+        Logger logger = Logger.getLogger("SetTournamentLogger");
+        Properties properties = Config.loadProperties("config.properties", logger);
+        String leaderboardFile = properties.getProperty("LeaderboardFile", "").trim();
+        Leaderboard leaderboard = leaderboardFile.isEmpty() ? null : Leaderboard.open(Paths.get(leaderboardFile));
+        String resultsDirectory = properties.getProperty("GameResultsDirectory", "").trim();
+        GameResults results = resultsDirectory.isEmpty() ? null : new GameResults(Paths.get(resultsDirectory));
+
+        long threadStatsMillis = (long) (Double.parseDouble(properties.getProperty("ThreadStatsSeconds", "0")) * 1000.0);
+
+        Tournament tournament = new Tournament(properties, strategies, leaderboard, results);
+        if (threadStatsMillis > 0) ThreadProfiler.start(logger, threadStatsMillis);
+        try {
+            tournament.play(games);
+        } finally {
+            ThreadProfiler.stop();
+        }
+        tournament.printStandings(games);
+        if (leaderboard != null) {
+            System.out.println("Leaderboard:");
+            leaderboard.top().forEach(System.out::println);
+            leaderboard.close();
+        }
+        if (results != null) {
+            System.out.println("Last games of " + strategies[0] + ":");
+            results.lastGames(strategies[0], 3).forEach(System.out::println);
+            results.close();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    Util util;
+
+    @BeforeEach
+    void setUp() {
+        config = config(3, 4);
+        util = new UtilImpl(config);
+    }
+
+    private static Config config(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(new MockLogger(), properties);
+    }
+
+    /**
+     * @return - the sets as sorted strings of sorted card ids, for comparing lists of sets.
+     */
+    private static TreeSet<String> normalized(List<int[]> sets) {
+        TreeSet<String> normalized = new TreeSet<>();
+        for (int[] set : sets) {
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            normalized.add(Arrays.toString(sorted));
+        }
+        return normalized;
+    }
+
+    @Test
+    void findSets_FindsTheSetsAmongTheCards() {
+
+        // 0, 1 and 2 differ in the last feature only, 3 differs from 0 in another feature
+        List<int[]> sets = util.findSets(new int[]{3, 0, 2, 1}, Integer.MAX_VALUE);
+        assertEquals(1, sets.size());
+        assertEquals("[0, 1, 2]", normalized(sets).first());
+    }
+
+    @Test
+    void findSets_FindsEverySetInTheDeck() {
+
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++)
+            deck[card] = card;
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(1080, sets.size()); // every two cards of the 81 are completed by a single card
+        assertEquals(1080, normalized(sets).size());
+        for (int[] set : sets)
+            assertTrue(util.testSet(set));
+    }
+
+    @Test
+    void findSets_StopsAtTheCount() {
+
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++)
+            deck[card] = card;
+        List<int[]> sets = util.findSets(deck, 5);
+        assertEquals(5, sets.size());
+        for (int[] set : sets)
+            assertTrue(util.testSet(set));
+    }
+
+    @Test
+    void findSets_MatchesTheListVersion() {
+
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            int[] cards = random.ints(0, config.deckSize).distinct().limit(1 + random.nextInt(20)).toArray();
+            List<Integer> list = new ArrayList<>();
+            for (int card : cards)
+                list.add(card);
+            assertEquals(normalized(util.findSets(list, Integer.MAX_VALUE)), normalized(util.findSets(cards, Integer.MAX_VALUE)));
+        }
+    }
+
+    @Test
+    void testSets_MatchesTestSet() {
+
+        // 3x4 takes the branch-free path for sets of 3 cards, 4x4 the packed path and 17x4 the scalar fallback
+        for (int[] features : new int[][]{{3, 4}, {4, 4}, {17, 4}}) {
+            Config config = config(features[0], features[1]);
+            Util util = new UtilImpl(config);
+            Random random = new Random(features[0]);
+            for (int candidatesCount : new int[]{0, 1, 63, 64, 65, 200}) {
+                int[] candidates = new int[candidatesCount * config.featureSize];
+                for (int i = 0; i < candidatesCount; i++) {
+                    int[] candidate = random.nextBoolean() ? randomSet(util, config, random) : randomCards(config, random);
+                    System.arraycopy(candidate, 0, candidates, i * config.featureSize, config.featureSize);
+                }
+
+                long[] legal = util.testSets(candidates);
+                assertTrue(legal.length >= (candidatesCount + 63) / 64);
+                for (int i = 0; i < candidatesCount; i++) {
+                    int[] candidate = Arrays.copyOfRange(candidates, i * config.featureSize, (i + 1) * config.featureSize);
+                    assertEquals(util.testSet(candidate), (legal[i / 64] & 1L << i) != 0, Arrays.toString(candidate));
+                }
+            }
+        }
+    }
+
+    @Test
+    void completeSet_FindsTheCompletingCard() {
+
+        assertEquals(2, util.completeSet(new int[]{0, 1}));
+        assertEquals(0, util.completeSet(new int[]{2, 1}));
+        assertEquals(6, util.completeSet(new int[]{0, 3}));
+        assertEquals(80, util.completeSet(new int[]{0, 40}));
+    }
+
+    @Test
+    void completeSet_MatchesASearchOfTheDeck() {
+
+        for (int[] features : new int[][]{{3, 4}, {4, 4}}) {
+            Config config = config(features[0], features[1]);
+            Util util = new UtilImpl(config);
+            Random random = new Random(features[0]);
+            for (int round = 0; round < 300; round++) {
+                int[] cards = Arrays.copyOf(randomCards(config, random), config.featureSize - 1);
+                if (round % 3 == 0) cards = Arrays.copyOf(randomSet(util, config, random), config.featureSize - 1);
+
+                int expected = -1;
+                int[] candidate = Arrays.copyOf(cards, config.featureSize);
+                for (int card = 0; card < config.deckSize; card++) {
+                    candidate[config.featureSize - 1] = card;
+                    if (util.testSet(candidate)) expected = expected == -1 ? card : -2;
+                }
+                assertEquals(Math.max(expected, -1), util.completeSet(cards), Arrays.toString(cards));
+            }
+        }
+    }
+
+    /**
+     * @return - featureSize distinct random cards.
+     */
+    private static int[] randomCards(Config config, Random random) {
+        return random.ints(0, config.deckSize).distinct().limit(config.featureSize).toArray();
+    }
+
+    /**
+     * @return - a random legal set, built feature by feature.
+     */
+    private static int[] randomSet(Util util, Config config, Random random) {
+        int[] set = new int[config.featureSize];
+        for (int feature = 0, weight = 1; feature < config.featureCount; feature++, weight *= config.featureSize) {
+            boolean same = random.nextBoolean();
+            int value = random.nextInt(config.featureSize);
+            for (int i = 0; i < set.length; i++)
+                set[i] += weight * (same ? value : (value + i) % config.featureSize);
+        }
+        assertTrue(util.testSet(set));
+        return set;
+    }
+
+    static class MockLogger extends Logger {
+        protected MockLogger() {
+            super("", null);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.ai.Strategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Allocation budgets of the game's hot paths, measured with the JVM's per-thread allocation counter after a warm-up.
+ * A test fails when an operation allocates more than its budget.
+ *
+ * The budgets are not zero: every change of the table publishes a new copy-on-write TableSnapshot for the lock-free
+ * readers. A token change allocates the snapshot and a copy of the token bits, and a card change also allocates the
+ * cards of the slots and the list of the sets on the table.
+ */
+class AllocationBudgetTest {
+
+    /**
+     * A TableSnapshot (48 bytes) and a copy of the token bits of a 12 slot table (16 + 12 * 8 bytes), rounded up for
+     * JVMs without compressed pointers.
+     */
+    private static final long TOKEN_BUDGET_BYTES = 192;
+
+    /**
+     * A claims check allocates a snapshot of the tokens for each rejected claim (its tokens are removed together), and
+     * the slots of the accepted sets with a snapshot of the cards left.
+     */
+    private static final long CLAIM_BUDGET_BYTES = 1024;
+
+    /**
+     * A refill allocates the cards it draws, their slots, a copy of the cards on the table and a snapshot of the
+     * cards.
+     */
+    private static final long CARDS_BUDGET_BYTES = 1536;
+
+    private static final int WARMUP_OPERATIONS = 20_000;
+    private static final int MEASURED_OPERATIONS = 2_000;
+    private static final int ROUNDS = 3;
+    private static final long GAME_MILLIS = 5_000;
+
+    private static final Logger logger = Logger.getLogger(AllocationBudgetTest.class.getName());
+
+    private static final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    Env env;
+    Table table;
+
+    @BeforeEach
+    void setUp() {
+        assertTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    /**
+     * Runs an operation until it is warmed up, then measures it in a few rounds. A round may be disturbed by one-off
+     * allocations of the JVM while it compiles and recompiles the code, so the best round counts.
+     *
+     * @param prepare   - brings the table to the state the operation starts from (not measured).
+     * @param operation - the operation.
+     * @return - the most bytes a run of the operation allocated in the best round.
+     */
+    private static long maxAllocatedBytes(Runnable prepare, Runnable operation) {
+        for (int i = 0; i < WARMUP_OPERATIONS; i++) {
+            prepare.run();
+            operation.run();
+        }
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long max = 0;
+            for (int i = 0; i < MEASURED_OPERATIONS; i++) {
+                prepare.run();
+                long start = threads.getCurrentThreadAllocatedBytes();
+                operation.run();
+                max = Math.max(max, threads.getCurrentThreadAllocatedBytes() - start);
+            }
+            best = Math.min(best, max);
+        }
+        return best;
+    }
+
+    @Test
+    void tokenToggle_AllocatesOnlyTheSnapshot() {
+
+        int[] next = new int[1];
+        long bytes = maxAllocatedBytes(() -> {}, () -> {
+            int slot = next[0]++ % env.config.tableSize;
+            if (!table.removeToken(0, slot)) table.placeToken(0, slot);
+        });
+        assertTrue(bytes <= TOKEN_BUDGET_BYTES, "a token toggle allocated " + bytes + " bytes");
+    }
+
+    @Test
+    void removeToken_WithoutAToken_DoesNotAllocate() {
+
+        assertEquals(0L, maxAllocatedBytes(() -> {}, () -> table.removeToken(1, 0)));
+    }
+
+    @Test
+    void removeTokens_AllocatesOneSnapshot() {
+
+        int[] slots = {0, 5, 10};
+        long bytes = maxAllocatedBytes(() -> {
+            for (int slot : slots)
+                table.placeToken(0, slot);
+        }, () -> table.removeTokens(0, slots, slots.length));
+        assertTrue(bytes <= TOKEN_BUDGET_BYTES, "removing a player's tokens allocated " + bytes + " bytes");
+    }
+
+    @Test
+    void removeCards_StaysWithinTheClaimBudget() {
+
+        int[] slots = {0, 5, 10};
+        int[] cards = {0, 5, 10};
+        long bytes = maxAllocatedBytes(() -> {
+            if (!table.isFull()) table.placeCards(cards, slots);
+        }, () -> table.removeCards(slots));
+        assertTrue(bytes <= CLAIM_BUDGET_BYTES, "removing a set allocated " + bytes + " bytes");
+    }
+
+    @Test
+    void placeCards_StaysWithinTheCardsBudget() {
+
+        int[] slots = {0, 5, 10};
+        int[] cards = {0, 5, 10};
+        long bytes = maxAllocatedBytes(() -> table.removeCards(slots), () -> table.placeCards(cards, slots));
+        assertTrue(bytes <= CARDS_BUDGET_BYTES, "placing a set allocated " + bytes + " bytes");
+    }
+
+    /**
+     * Plays a headless game of greedy and random computer players at full speed, with the dealer's allocation budgets
+     * on. The dealer measures its own operations (see AllocationBudget), and logs the ones over their budget. Like
+     * the rounds of maxAllocatedBytes, a game may be disturbed by the JVM, so the best of a few games counts.
+     *
+     * @return - the messages of the allocation budgets.
+     */
+    private static List<String> playGame() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "6"); // a long game, so every operation is measured well past its warm-up
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "4");
+        properties.put("ComputerStrategies", "greedy, greedy, random, random");
+        properties.put("TurnTimeoutSeconds", "0"); // reshuffle as soon as the table has no sets
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("TokenAllocationBudget", Long.toString(TOKEN_BUDGET_BYTES));
+        properties.put("ClaimAllocationBudget", Long.toString(CLAIM_BUDGET_BYTES));
+        properties.put("CardsAllocationBudget", Long.toString(CARDS_BUDGET_BYTES));
+        RecordingLogger logger = new RecordingLogger();
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false, Strategy.create(config.computerStrategies[i], env, config.random("player-" + i)));
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join(GAME_MILLIS);
+        dealer.terminate();
+        dealerThread.join();
+        return logger.messages;
+    }
+
+    @Test
+    void game_StaysWithinTheBudgets() throws InterruptedException {
+
+        playGame(); // the first game compiles the code paths of a game
+        List<String> messages = null;
+        String violation = null;
+        for (int round = 0; round < ROUNDS && (messages == null || violation != null); round++) {
+            messages = playGame();
+            violation = messages.stream().filter(message -> message.contains("over its budget")).findFirst().orElse(null);
+        }
+        if (violation != null) fail(violation);
+        for (String operation : new String[]{"token toggle", "claims check", "table refill"}) {
+            String report = messages.stream().filter(message -> message.contains(operation + " allocated")).findFirst().orElse(null);
+            assertNotNull(report, "no " + operation + " was measured");
+            logger.info(report);
+        }
+    }
+
+    /**
+     * A logger that keeps the messages of the allocation budgets.
+     */
+    static class RecordingLogger extends Logger {
+
+        final List<String> messages = new ArrayList<>();
+
+        protected RecordingLogger() {
+            super("", null);
+        }
+
+        @Override
+        public synchronized void log(LogRecord record) {
+            if (record.getMessage().contains("allocated")) messages.add(record.getMessage());
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CheckpointTest {
+
+    /**
+     * The size of the header of a checkpoint file, the deck follows it.
+     */
+    private static final int HEADER_BYTES = 4 * 2 + 8 + 4 * 3 + 8 * 2 + 4 * 2;
+
+    @TempDir
+    Path directory;
+
+    Env env;
+    Table table;
+    Deck deck;
+    Player[] players;
+    Path file;
+
+    @BeforeEach
+    void setUp() {
+        env = env("60");
+        table = new Table(env);
+        deck = new Deck(env.config.deckSize);
+        players = new Player[env.config.players];
+        for (int id = 0; id < players.length; id++)
+            players[id] = new Player(env, null, table, id, true);
+        file = directory.resolve("game.checkpoint");
+    }
+
+    private static Env env(String turnTimeoutSeconds) {
+        Properties properties = new Properties();
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("TurnTimeoutSeconds", turnTimeoutSeconds);
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteBuffer buffer = Checkpoint.allocate(env.config);
+        Checkpoint.encode(buffer, env, 12_345, 678, 2, 3, deck, table, players);
+        Checkpoint.write(buffer, file);
+    }
+
+    @Test
+    void read_RestoresTheWrittenGame() throws IOException {
+
+        for (int slot = 0; slot < 3; slot++)
+            table.placeCard(deck.draw(), slot);
+        table.placeToken(0, 0);
+        table.placeToken(0, 2);
+        table.placeToken(1, 1);
+        players[1].restore(4, 60_000);
+
+        writeCheckpoint();
+        Checkpoint checkpoint = Checkpoint.read(file, env.config);
+
+        assertEquals(12_345, checkpoint.playedMillis);
+        assertEquals(678, checkpoint.turnElapsedMillis);
+        assertEquals(2, checkpoint.reshuffles);
+        assertEquals(3, checkpoint.penalties);
+        assertArrayEquals(deck.toArray(), checkpoint.deck);
+        assertArrayEquals(new int[]{0, 1, 2, -1}, checkpoint.slotToCard);
+        assertArrayEquals(new int[]{0, 4}, checkpoint.scores);
+        assertEquals(0, checkpoint.freezeMillis[0]);
+        assertTrue(checkpoint.freezeMillis[1] > 50_000 && checkpoint.freezeMillis[1] <= 60_000);
+        assertArrayEquals(new int[]{0, 2}, checkpoint.tokens[0]);
+        assertArrayEquals(new int[]{1}, checkpoint.tokens[1]);
+    }
+
+    @Test
+    void write_ReplacesThePreviousCheckpoint() throws IOException {
+
+        writeCheckpoint();
+        deck.draw();
+        writeCheckpoint();
+
+        assertEquals(env.config.deckSize - 1, Checkpoint.read(file, env.config).deck.length);
+        assertTrue(Files.notExists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    void read_RejectsADifferentConfiguration() throws IOException {
+
+        writeCheckpoint();
+        assertThrows(IOException.class, () -> Checkpoint.read(file, env("30").config));
+    }
+
+    @Test
+    void read_RejectsACorruptFile() throws IOException {
+
+        writeCheckpoint();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> Checkpoint.read(file, env.config));
+
+        bytes[0] ^= 1;
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Checkpoint.read(file, env.config));
+    }
+
+    /**
+     * Writes a checkpoint with an int replaced, and checks that it is rejected.
+     *
+     * @param offset - the offset of the int in the file.
+     * @param value  - the value to write instead.
+     */
+    private void assertRejected(int offset, int value) throws IOException {
+        writeCheckpoint();
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(file, bytes);
+        assertThrows(IOException.class, () -> Checkpoint.read(file, env.config));
+    }
+
+    @Test
+    void read_RejectsValuesOutOfRange() throws IOException {
+
+        table.placeCard(deck.draw(), 0);
+        table.placeToken(0, 0);
+        int tableOffset = HEADER_BYTES + 4 + 4 * deck.size();
+        int playerOffset = tableOffset + 4 * env.config.tableSize; // player 0: score, freeze time, tokens
+        int tokensOffset = playerOffset + 4 + 8;
+
+        assertRejected(HEADER_BYTES, env.config.deckSize + 1); // more cards than the deck has
+        assertRejected(HEADER_BYTES + 4, env.config.deckSize); // a card after the last one
+        assertRejected(HEADER_BYTES + 4, -1);
+        assertRejected(tableOffset + 4, env.config.deckSize + 5); // a card in an empty slot
+        assertRejected(tableOffset, deck.toArray()[0]); // a card both on the table and in the deck
+        assertRejected(playerOffset, -2); // a negative score
+        assertRejected(tokensOffset, env.config.featureSize + 1); // too many tokens
+        assertRejected(tokensOffset + 4, env.config.tableSize); // a token after the last slot
+        assertRejected(tokensOffset + 4, 1); // a token in an empty slot
+
+        writeCheckpoint();
+        assertArrayEquals(new int[]{0}, Checkpoint.read(file, env.config).tokens[0]); // the checkpoint itself is valid
+    }
+}
@@ -0,0 +1,254 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the dealer's claims check and table refill. The key presses are applied, the claims checked and the table
+ * refilled on the test thread (the player threads are not started, so the dealer tests the claimed sets itself).
+ */
+class DealerTest {
+
+    @TempDir
+    Path directory;
+
+    Env env;
+    Table table;
+    Player[] players;
+    Dealer dealer;
+    long startTime;
+
+    @BeforeEach
+    void setUp() {
+        env = env("0");
+        newGame(new Table(env));
+        for (int slot = 0; slot < env.config.tableSize; slot++)
+            table.placeCard(slot, slot);
+        startTime = System.nanoTime();
+    }
+
+    private static Env env(String refillMinSets) {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("RefillMinSets", refillMinSets);
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    private void newGame(Table table) {
+        this.table = table;
+        players = new Player[env.config.players];
+        dealer = new Dealer(env, table, players);
+        for (int id = 0; id < players.length; id++)
+            players[id] = new Player(env, dealer, table, id, true);
+    }
+
+    /**
+     * Presses the keys of slots, the nth one at startTime + pressTimes[n], and applies the key presses.
+     */
+    private void press(Player player, int[] slots, int... pressTimes) {
+        for (int i = 0; i < slots.length; i++)
+            player.keyPressed(slots[i], startTime + pressTimes[i]);
+        dealer.applyKeyPresses();
+    }
+
+    @Test
+    void checkForSets_TwoSetsSharingACard_TheEarlierOneScores() {
+
+        int[] first = {0, 1, 2};
+        int[] second = {0, 4, 8};
+        assertTrue(env.util.testSet(first) && env.util.testSet(second)); // the cards are the slots
+
+        press(players[0], first, 10, 20, 40);
+        press(players[1], second, 5, 15, 30); // applied later, but completed earlier
+        assertTrue(dealer.checkForSets(true));
+
+        assertEquals(0, players[0].score());
+        assertEquals(1, players[1].score());
+        assertTrue(players[0].freezeRemainingMillis() <= 0); // the set was taken: no penalty
+        assertTrue(players[1].freezeRemainingMillis() > 0);
+        assertEquals(env.config.tableSize - 3, table.countCards());
+        for (int slot : second)
+            assertEquals(-1, table.snapshot().card(slot));
+        assertTrue(table.hasToken(0, 1) && table.hasToken(0, 2)); // the player keeps its tokens on the cards left
+    }
+
+    @Test
+    void checkForSets_NotASet_Penalizes() {
+
+        int[] slots = {0, 1, 3};
+        assertFalse(env.util.testSet(slots));
+
+        press(players[0], slots, 10, 20, 30);
+        assertTrue(players[0].awaitingAnswer());
+        assertFalse(dealer.checkForSets(true));
+
+        assertEquals(0, players[0].score());
+        assertTrue(players[0].freezeRemainingMillis() > 0);
+        assertEquals(env.config.tableSize, table.countCards());
+        for (int slot : slots)
+            assertFalse(table.hasToken(0, slot));
+    }
+
+    @Test
+    void checkForSets_TokensOnTheRemovedCards_AreCleared() {
+
+        press(players[1], new int[]{2, 5}, 10, 20);
+        press(players[0], new int[]{0, 1, 2}, 30, 40, 50);
+        assertTrue(dealer.checkForSets(true));
+
+        assertFalse(table.hasToken(1, 2));
+        assertTrue(table.hasToken(1, 5));
+
+        // the dealer forgot the token too: the player has two tokens, and claims a set with its third one
+        press(players[1], new int[]{6, 7}, 60, 70);
+        assertTrue(table.hasToken(1, 6) && table.hasToken(1, 7));
+        assertTrue(players[1].awaitingAnswer());
+    }
+
+    @Test
+    void checkForSets_WaitsForThePlayersToVerifyTheirSets() {
+
+        press(players[0], new int[]{0, 1, 2}, 10, 20, 30);
+        assertFalse(dealer.checkForSets(false));
+        assertTrue(players[0].awaitingAnswer());
+        assertEquals(env.config.tableSize, table.countCards());
+
+        assertTrue(dealer.checkForSets(true));
+        assertEquals(1, players[0].score());
+    }
+
+    @Test
+    void checkForSets_NoClaims_ReturnsFalse() {
+
+        press(players[0], new int[]{0, 1}, 10, 20);
+        assertFalse(players[0].awaitingAnswer());
+        assertFalse(dealer.checkForSets(true));
+        assertTrue(table.hasToken(0, 0) && table.hasToken(0, 1));
+    }
+
+    /**
+     * A table that counts the times cards are removed from it.
+     */
+    private static class CountingTable extends Table {
+
+        int removals;
+
+        private CountingTable(Env env) {
+            super(env);
+        }
+
+        @Override
+        void removeCards(int[] slots) {
+            super.removeCards(slots);
+            removals++;
+        }
+    }
+
+    /**
+     * @return - cards without a set among them, picked in the order of their ids.
+     */
+    private List<Integer> cardsWithoutASet() {
+        List<Integer> cards = new ArrayList<>();
+        boolean[] completesASet = new boolean[env.config.deckSize];
+        for (int card = 0; card < env.config.deckSize; card++) {
+            if (completesASet[card]) continue;
+            for (int other : cards) {
+                int completing = env.util.completeSet(new int[]{other, card});
+                if (completing >= 0) completesASet[completing] = true;
+            }
+            cards.add(card);
+        }
+        return cards;
+    }
+
+    /**
+     * Resumes a game with the given cards in the first slots of the table and in the deck, through a checkpoint.
+     */
+    private void resume(List<Integer> tableCards, List<Integer> deckCards) throws IOException {
+        Table dealt = new Table(env);
+        for (int slot = 0; slot < tableCards.size(); slot++)
+            dealt.placeCard(tableCards.get(slot), slot);
+        Deck deck = new Deck(env.config.deckSize);
+        deck.reset(deckCards.stream().mapToInt(Integer::intValue).toArray());
+        ByteBuffer buffer = Checkpoint.allocate(env.config);
+        Checkpoint.encode(buffer, env, 0, 0, 0, 0, deck, dealt, players);
+        Path file = directory.resolve("game.checkpoint");
+        Checkpoint.write(buffer, file);
+        dealer.restore(Checkpoint.read(file, env.config));
+    }
+
+    @Test
+    void placeCardsOnTable_NoSetOnTheTable_DrawsACardThatCompletesOne() throws IOException {
+
+        env = env("1");
+        newGame(new Table(env));
+        List<Integer> withoutASet = cardsWithoutASet();
+        List<Integer> tableCards = withoutASet.subList(0, env.config.tableSize - 1);
+        List<Integer> deckCards = new ArrayList<>(withoutASet.subList(env.config.tableSize - 1, withoutASet.size()));
+        int completing = env.util.completeSet(new int[]{tableCards.get(0), tableCards.get(1)});
+        deckCards.add(completing); // the only card in the deck that completes a set
+        resume(tableCards, deckCards);
+        assertEquals(0, table.countSets());
+
+        dealer.placeCardsOnTable();
+        assertTrue(table.isFull());
+        assertEquals(env.config.tableSize - 1, table.snapshot().slotOf(completing));
+        assertTrue(table.countSets() > 0);
+        assertEquals(deckCards.size() - 1, dealer.cardsInDeck());
+    }
+
+    @Test
+    void placeCardsOnTable_AFullTableWithoutASet_SwapsCardsIntoASet() throws IOException {
+
+        env = env("1");
+        newGame(new Table(env));
+        List<Integer> tableCards = cardsWithoutASet().subList(0, env.config.tableSize);
+        List<Integer> deckCards = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; card++)
+            if (!tableCards.contains(card)) deckCards.add(card);
+        resume(tableCards, deckCards);
+        assertEquals(0, table.countSets());
+
+        dealer.placeCardsOnTable();
+        assertTrue(table.isFull());
+        assertTrue(table.countSets() > 0);
+        assertEquals(deckCards.size(), dealer.cardsInDeck());
+    }
+
+    @Test
+    void placeCardsOnTable_NoSetCanBeMade_StopsAfterTheRetryLimit() throws IOException {
+
+        env = env("1");
+        CountingTable counting = new CountingTable(env);
+        newGame(counting);
+        List<Integer> withoutASet = cardsWithoutASet();
+        assertTrue(withoutASet.size() > env.config.tableSize);
+        resume(withoutASet.subList(0, env.config.tableSize), withoutASet.subList(env.config.tableSize, withoutASet.size()));
+
+        dealer.placeCardsOnTable();
+        assertEquals(Dealer.MAX_PARTIAL_RESHUFFLES, counting.removals);
+        assertTrue(table.isFull());
+        assertEquals(0, table.countSets());
+        assertEquals(withoutASet.size() - env.config.tableSize, dealer.cardsInDeck());
+    }
+}
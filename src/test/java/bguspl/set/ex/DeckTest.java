@@ -0,0 +1,145 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    private static final int DECK_SIZE = 81;
+
+    Deck deck;
+
+    @BeforeEach
+    void setUp() {
+        deck = new Deck(DECK_SIZE);
+    }
+
+    private static int[] allCards() {
+        int[] cards = new int[DECK_SIZE];
+        for (int card = 0; card < DECK_SIZE; card++)
+            cards[card] = card;
+        return cards;
+    }
+
+    private static int[] sorted(int[] cards) {
+        int[] copy = cards.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Test
+    void newDeck_HoldsAllTheCardsInOrder() {
+
+        assertEquals(DECK_SIZE, deck.size());
+        assertArrayEquals(allCards(), deck.toArray());
+        for (int card = 0; card < DECK_SIZE; card++)
+            assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void draw_TakesTheTopCard() {
+
+        assertEquals(0, deck.draw());
+        assertEquals(1, deck.draw());
+        assertFalse(deck.contains(0));
+        assertEquals(DECK_SIZE - 2, deck.size());
+        assertEquals(2, deck.toArray()[0]);
+    }
+
+    @Test
+    void draw_EmptiesTheDeck() {
+
+        for (int card = 0; card < DECK_SIZE; card++)
+            assertEquals(card, deck.draw());
+        assertTrue(deck.isEmpty());
+        assertEquals(0, deck.toArray().length);
+    }
+
+    @Test
+    void remove_TakesASpecificCardOut() {
+
+        deck.remove(40);
+        assertFalse(deck.contains(40));
+        assertEquals(DECK_SIZE - 1, deck.size());
+        for (int card : deck.toArray())
+            assertTrue(card != 40);
+
+        deck.remove(deck.toArray()[0]); // the top card
+        assertEquals(DECK_SIZE - 2, deck.size());
+    }
+
+    @Test
+    void add_ReturnsTheCardToTheBottom() {
+
+        int first = deck.draw();
+        int second = deck.draw();
+        deck.add(second);
+        deck.add(first);
+
+        int[] cards = deck.toArray();
+        assertEquals(DECK_SIZE, cards.length);
+        assertEquals(second, cards[DECK_SIZE - 2]);
+        assertEquals(first, cards[DECK_SIZE - 1]);
+        assertTrue(deck.contains(first));
+        assertArrayEquals(allCards(), sorted(cards));
+    }
+
+    @Test
+    void remove_AfterCardsWereReturned() {
+
+        for (int i = 0; i < 10; i++)
+            deck.add(deck.draw()); // moves the cards to the start of the array once the end is reached
+        deck.remove(5);
+        deck.remove(70);
+
+        int[] cards = deck.toArray();
+        assertEquals(DECK_SIZE - 2, cards.length);
+        assertFalse(deck.contains(5));
+        assertFalse(deck.contains(70));
+        for (int card : cards)
+            assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void shuffle_KeepsTheCards() {
+
+        deck.draw();
+        deck.shuffle(new SplittableRandom(7));
+
+        int[] cards = deck.toArray();
+        assertEquals(DECK_SIZE - 1, cards.length);
+        assertArrayEquals(Arrays.copyOfRange(allCards(), 1, DECK_SIZE), sorted(cards));
+        for (int card : cards)
+            assertTrue(deck.contains(card));
+    }
+
+    @Test
+    void shuffle_IsDeterminedByTheRandomSource() {
+
+        Deck other = new Deck(DECK_SIZE);
+        deck.shuffle(new SplittableRandom(7));
+        other.shuffle(new SplittableRandom(7));
+
+        assertArrayEquals(deck.toArray(), other.toArray());
+        assertFalse(Arrays.equals(allCards(), deck.toArray()));
+    }
+
+    @Test
+    void reset_ReplacesTheCards() {
+
+        deck.reset(new int[]{5, 3, 80});
+
+        assertArrayEquals(new int[]{5, 3, 80}, deck.toArray());
+        assertTrue(deck.contains(80));
+        assertFalse(deck.contains(0));
+        assertEquals(5, deck.draw());
+    }
+}
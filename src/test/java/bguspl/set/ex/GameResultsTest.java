@@ -0,0 +1,184 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GameResultsTest {
+
+    private static final long CONFIG = 1234;
+    private static final long OTHER_CONFIG = 5678;
+
+    @TempDir
+    Path directory;
+
+    GameResults results;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        results = new GameResults(directory);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        results.close();
+    }
+
+    private static void assertGame(GameResults.Game expected, GameResults.Game actual) {
+        assertEquals(expected.endMillis, actual.endMillis);
+        assertEquals(expected.durationMillis, actual.durationMillis);
+        assertEquals(expected.configKey, actual.configKey);
+        assertEquals(expected.reshuffles, actual.reshuffles);
+        assertEquals(expected.penalties, actual.penalties);
+        assertEquals(List.of(expected.names), List.of(actual.names));
+        assertArrayEquals(expected.scores, actual.scores);
+    }
+
+    private GameResults.Game append(long durationMillis, long configKey, String... names) throws IOException {
+        int[] scores = new int[names.length];
+        for (int i = 0; i < scores.length; i++)
+            scores[i] = (int) durationMillis + i;
+        return results.append(durationMillis, configKey, 2, 3, names, scores);
+    }
+
+    @Test
+    void append_ThenLastGames_ReadsTheGameBack() throws IOException {
+
+        GameResults.Game game = results.append(60_000, CONFIG, 4, 7, new String[]{"alice", "bob"}, new int[]{5, 3});
+
+        List<GameResults.Game> games = results.lastGames("bob", 10);
+        assertEquals(1, games.size());
+        assertGame(game, games.get(0));
+        assertTrue(results.lastGames("carol", 10).isEmpty());
+    }
+
+    @Test
+    void lastGames_NewestFirst_UpToN() throws IOException {
+
+        GameResults.Game first = append(1_000, CONFIG, "alice", "bob");
+        append(2_000, CONFIG, "bob", "carol");
+        GameResults.Game third = append(3_000, CONFIG, "carol", "alice");
+        GameResults.Game fourth = append(4_000, CONFIG, "alice", "dave");
+
+        List<GameResults.Game> games = results.lastGames("alice", 2);
+        assertEquals(2, games.size());
+        assertGame(fourth, games.get(0));
+        assertGame(third, games.get(1));
+
+        games = results.lastGames("alice", 10);
+        assertEquals(3, games.size());
+        assertGame(first, games.get(2));
+    }
+
+    @Test
+    void lastGames_ANameTwiceInAGame_ReturnsTheGameOnce() throws IOException {
+
+        append(1_000, CONFIG, "alice", "alice");
+        assertEquals(1, results.lastGames("alice", 10).size());
+    }
+
+    @Test
+    void configIndex_CountsAndAveragesTheGames() throws IOException {
+
+        append(1_000, CONFIG, "alice");
+        append(3_000, CONFIG, "bob");
+        append(5_000, OTHER_CONFIG, "alice");
+
+        assertEquals(2L, results.games(CONFIG));
+        assertEquals(1L, results.games(OTHER_CONFIG));
+        assertEquals(0L, results.games(42));
+        assertEquals(2_000.0, results.averageDurationMillis(CONFIG));
+        assertTrue(Double.isNaN(results.averageDurationMillis(42)));
+    }
+
+    @Test
+    void gamesBetween_ReturnsTheGamesInTheRange() throws IOException {
+
+        GameResults.Game game = append(1_000, CONFIG, "alice");
+
+        assertEquals(1, results.gamesBetween(game.endMillis, game.endMillis + 1).size());
+        assertTrue(results.gamesBetween(game.endMillis + 1, Long.MAX_VALUE).isEmpty());
+        assertTrue(results.gamesBetween(0, game.endMillis).isEmpty());
+    }
+
+    @Test
+    void append_ManyPlayers_ReadsThemBack() throws IOException {
+
+        String[] names = new String[300];
+        for (int i = 0; i < names.length; i++)
+            names[i] = "player " + i;
+        GameResults.Game game = append(1_000, CONFIG, names);
+
+        assertGame(game, results.lastGames("player 299", 1).get(0));
+    }
+
+    @Test
+    void append_RejectsTooManyPlayers() {
+
+        String[] names = new String[GameResults.MAX_PLAYERS + 1];
+        Arrays.fill(names, "");
+        assertThrows(IllegalArgumentException.class, () -> results.append(1_000, CONFIG, 0, 0, names, new int[names.length]));
+    }
+
+    @Test
+    void reopen_KeepsTheGamesAndIndexes() throws IOException {
+
+        GameResults.Game first = append(1_000, CONFIG, "alice", "bob");
+        GameResults.Game second = append(3_000, OTHER_CONFIG, "bob");
+        results.close();
+
+        results = new GameResults(directory);
+        List<GameResults.Game> games = results.lastGames("bob", 10);
+        assertEquals(2, games.size());
+        assertGame(second, games.get(0));
+        assertGame(first, games.get(1));
+        assertEquals(1L, results.games(CONFIG));
+        assertEquals(2, results.gamesBetween(0, Long.MAX_VALUE).size());
+
+        GameResults.Game third = append(5_000, CONFIG, "alice");
+        assertGame(third, results.lastGames("alice", 1).get(0));
+        assertEquals(2L, results.games(CONFIG));
+    }
+
+    @Test
+    void reopen_AfterACrash_IndexesTheTailAndTrimsATornRecord() throws IOException {
+
+        append(1_000, CONFIG, "alice");
+        GameResults.Game second = append(3_000, CONFIG, "alice");
+        results.close();
+
+        // the crash lost the index entries of the second game, and left half a record at the end of the segment
+        Path times = directory.resolve("time.idx");
+        try (FileChannel channel = FileChannel.open(times, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(times) / 2);
+        }
+        Path segment = directory.resolve("results-000000.seg");
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(0, 1_000), size);
+        }
+
+        results = new GameResults(directory);
+        assertEquals(size, Files.size(segment));
+        List<GameResults.Game> games = results.lastGames("alice", 10);
+        assertEquals(2, games.size());
+        assertGame(second, games.get(0));
+        assertEquals(2L, results.games(CONFIG));
+        assertEquals(2, results.gamesBetween(0, Long.MAX_VALUE).size());
+    }
+}
@@ -0,0 +1,128 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InputRingTest {
+
+    InputRing ring;
+
+    @BeforeEach
+    void setUp() {
+        ring = new InputRing(3);
+    }
+
+    @Test
+    void poll_ReturnsTheKeyPressesInOrder() {
+
+        assertTrue(ring.offer(4, 100));
+        assertTrue(ring.offer(7, 200));
+        assertEquals(2, ring.size());
+
+        assertEquals(4, ring.poll());
+        assertEquals(100, ring.polledPressTime());
+        assertEquals(7, ring.poll());
+        assertEquals(200, ring.polledPressTime());
+        assertEquals(-1, ring.poll());
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void offer_RejectsKeyPressesWhenFull() {
+
+        for (int slot = 0; slot < 3; slot++)
+            assertTrue(ring.offer(slot, slot));
+        assertTrue(ring.isFull());
+        assertFalse(ring.offer(9, 9));
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(9, 9));
+        assertEquals(1, ring.poll());
+        assertEquals(2, ring.poll());
+        assertEquals(9, ring.poll());
+    }
+
+    @Test
+    void offer_WrapsAroundTheCapacity() {
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(ring.offer(i, i * 10L));
+            assertEquals(i, ring.poll());
+            assertEquals(i * 10L, ring.polledPressTime());
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    void clear_DiscardsTheKeyPresses() {
+
+        ring.offer(1, 1);
+        ring.offer(2, 2);
+        ring.clear();
+
+        assertTrue(ring.isEmpty());
+        assertEquals(-1, ring.poll());
+        assertTrue(ring.offer(3, 3));
+        assertEquals(3, ring.poll());
+    }
+
+    @Test
+    void offer_UnparksTheConsumer() throws InterruptedException {
+
+        ring.setConsumer(Thread.currentThread());
+        Thread producer = new Thread(() -> {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+            ring.offer(5, 5);
+        });
+        producer.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ring.isEmpty() && System.nanoTime() < deadline)
+            LockSupport.parkNanos(this, TimeUnit.SECONDS.toNanos(10));
+        producer.join();
+        assertEquals(5, ring.poll());
+    }
+
+    @Test
+    void poll_TakesEveryKeyPressOnceWhileProducingAndClearing() throws InterruptedException {
+
+        int presses = 20_000;
+        InputRing ring = new InputRing(8);
+        ring.setConsumer(Thread.currentThread());
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < presses; i++)
+                while (!ring.offer(i % 12, i)) Thread.yield();
+        });
+        Thread clearer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                ring.clear();
+                Thread.yield();
+            }
+        });
+        producer.start();
+        clearer.start();
+
+        long last = -1;
+        while (producer.isAlive() || !ring.isEmpty()) {
+            int slot = ring.poll();
+            if (slot < 0) {
+                Thread.yield();
+                continue;
+            }
+            long pressTime = ring.polledPressTime();
+            assertTrue(pressTime > last); // never taken twice, never out of order
+            assertEquals(pressTime % 12, slot);
+            last = pressTime;
+        }
+        producer.join();
+        clearer.join();
+        assertTrue(ring.isEmpty());
+    }
+}
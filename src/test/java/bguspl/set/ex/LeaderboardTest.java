@@ -0,0 +1,158 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderboardTest {
+
+    @TempDir
+    Path directory;
+
+    Path file;
+    Leaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = directory.resolve("leaderboard");
+        leaderboard = Leaderboard.open(file);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        leaderboard.close();
+    }
+
+    private static void assertStanding(String name, long games, long wins, long points, Leaderboard.Standing standing) {
+        assertEquals(name, standing.name);
+        assertEquals(games, standing.games);
+        assertEquals(wins, standing.wins);
+        assertEquals(points, standing.points);
+    }
+
+    @Test
+    void recordGame_AddsToTheStanding() throws IOException {
+
+        assertNull(leaderboard.standing("alice"));
+        leaderboard.recordGame("alice", true, 5);
+        leaderboard.recordGame("alice", false, 3);
+        leaderboard.recordGame("bob", false, 4);
+
+        assertStanding("alice", 2, 1, 8, leaderboard.standing("alice"));
+        assertStanding("bob", 1, 0, 4, leaderboard.standing("bob"));
+    }
+
+    @Test
+    void recordGame_LongName_IsCutToTheRecord() throws IOException {
+
+        String name = "a player with a name much longer than a record can keep";
+        leaderboard.recordGame(name, true, 1);
+        leaderboard.recordGame(name, true, 1);
+
+        Leaderboard.Standing standing = leaderboard.standing(name);
+        assertTrue(name.startsWith(standing.name) && standing.name.length() < name.length());
+        assertEquals(2L, standing.games);
+        assertEquals(1, leaderboard.snapshot().size());
+    }
+
+    @Test
+    void top_IsSortedByPointsThenWins() throws IOException {
+
+        leaderboard.recordGame("carol", false, 6);
+        leaderboard.recordGame("alice", true, 6);
+        leaderboard.recordGame("bob", true, 9);
+        leaderboard.recordGame("dave", true, 1);
+
+        List<Leaderboard.Standing> top = leaderboard.top();
+        assertEquals(4, top.size());
+        assertEquals("bob", top.get(0).name);
+        assertEquals("alice", top.get(1).name); // the same points as carol, with more wins
+        assertEquals("carol", top.get(2).name);
+        assertEquals("dave", top.get(3).name);
+    }
+
+    @Test
+    void top_KeepsTheBestStandings() throws IOException {
+
+        for (int player = 0; player < Leaderboard.TOP + 5; player++)
+            leaderboard.recordGame("player " + player, false, player);
+        leaderboard.recordGame("player 0", true, 100);
+
+        List<Leaderboard.Standing> top = leaderboard.top();
+        assertEquals(Leaderboard.TOP, top.size());
+        assertStanding("player 0", 2, 1, 100, top.get(0));
+        for (int i = 1; i < top.size(); i++)
+            assertEquals("player " + (Leaderboard.TOP + 5 - i), top.get(i).name);
+    }
+
+    @Test
+    void open_AnExistingFile_KeepsTheStandings() throws IOException {
+
+        leaderboard.recordGame("alice", true, 5);
+        leaderboard.recordGame("bob", false, 2);
+        leaderboard.close();
+
+        leaderboard = Leaderboard.open(file);
+        assertStanding("alice", 1, 1, 5, leaderboard.standing("alice"));
+        assertEquals("alice", leaderboard.top().get(0).name);
+        assertEquals(2, leaderboard.top().size());
+
+        leaderboard.recordGame("bob", true, 7);
+        assertStanding("bob", 2, 1, 9, leaderboard.standing("bob"));
+        assertEquals(2, leaderboard.snapshot().size());
+    }
+
+    @Test
+    void open_RejectsAnotherFile() throws IOException {
+
+        Path other = directory.resolve("other");
+        Files.write(other, new byte[64]);
+        assertThrows(IOException.class, () -> Leaderboard.open(other));
+    }
+
+    @Test
+    void twoInstances_OnOneFile_ShareTheRecords() throws IOException {
+
+        try (Leaderboard other = Leaderboard.open(file)) {
+            leaderboard.recordGame("alice", true, 5);
+            other.recordGame("bob", false, 2);
+            other.recordGame("alice", false, 1); // the record appended by the first instance
+
+            assertStanding("alice", 2, 1, 6, leaderboard.standing("alice"));
+            assertStanding("bob", 1, 0, 2, leaderboard.standing("bob"));
+            assertStanding("alice", 2, 1, 6, other.standing("alice"));
+
+            List<Leaderboard.Standing> standings = leaderboard.snapshot();
+            assertEquals(2, standings.size());
+            assertEquals("alice", standings.get(0).name);
+        }
+    }
+
+    @Test
+    void aRecordLeftLocked_IsReleased() throws IOException {
+
+        leaderboard.recordGame("alice", true, 5);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer version = ByteBuffer.allocate(Long.BYTES).putLong(0, 3); // as if a writer died while updating
+            channel.write(version, 64); // the version of the first record
+        }
+
+        assertStanding("alice", 1, 1, 5, leaderboard.standing("alice"));
+        leaderboard.recordGame("alice", false, 1);
+        assertStanding("alice", 2, 1, 6, leaderboard.standing("alice"));
+    }
+}
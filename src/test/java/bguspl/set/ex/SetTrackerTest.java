@@ -0,0 +1,131 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetTrackerTest {
+
+    Env env;
+    SetTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        env = env(3, 4);
+        tracker = new SetTracker(env, 12);
+    }
+
+    private static Env env(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    /**
+     * @return - the sets as sorted strings of sorted card ids, for comparing lists of sets.
+     */
+    private static TreeSet<String> normalized(List<int[]> sets) {
+        TreeSet<String> normalized = new TreeSet<>();
+        for (int[] set : sets) {
+            int[] sorted = set.clone();
+            Arrays.sort(sorted);
+            normalized.add(Arrays.toString(sorted));
+        }
+        return normalized;
+    }
+
+    private static int[] toArray(List<Integer> cards) {
+        return cards.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    void add_FindsTheSetsWithTheTrackedCards() {
+
+        tracker.add(0);
+        tracker.add(3);
+        tracker.add(1);
+        assertEquals(0, tracker.sets());
+
+        tracker.add(2); // completes 0, 1, 2
+        assertEquals(1, tracker.sets());
+        assertEquals("[0, 1, 2]", normalized(tracker.snapshot()).first());
+    }
+
+    @Test
+    void remove_DropsTheSetsOfTheCard() {
+
+        for (int card : new int[]{0, 1, 2, 3, 6})
+            tracker.add(card); // the sets are 0, 1, 2 and 0, 3, 6
+        assertEquals(2, tracker.sets());
+
+        tracker.remove(1);
+        assertEquals(1, tracker.sets());
+        assertEquals("[0, 3, 6]", normalized(tracker.snapshot()).first());
+
+        tracker.remove(0);
+        assertEquals(0, tracker.sets());
+        assertTrue(tracker.snapshot().isEmpty());
+
+        tracker.add(1);
+        tracker.add(0);
+        assertEquals(2, tracker.sets());
+    }
+
+    @Test
+    void snapshot_HoldsSortedLegalSets() {
+
+        for (int card = 0; card < 12; card++)
+            tracker.add(card);
+        List<int[]> snapshot = tracker.snapshot();
+        assertEquals(snapshot.size(), tracker.sets());
+        for (int[] set : snapshot) {
+            assertEquals(3, set.length);
+            assertTrue(set[0] < set[1] && set[1] < set[2]);
+            assertTrue(env.util.testSet(set));
+        }
+    }
+
+    @Test
+    void changes_MatchFindSets() {
+
+        for (int[] features : new int[][]{{3, 4}, {4, 4}, {3, 3}}) {
+            Env env = env(features[0], features[1]);
+            Util util = env.util;
+            int capacity = 12;
+            SetTracker tracker = new SetTracker(env, capacity);
+            List<Integer> tracked = new ArrayList<>();
+            SplittableRandom random = new SplittableRandom(features[0] * 31L + features[1]);
+
+            for (int change = 0; change < 2000; change++) {
+                boolean add = tracked.size() < capacity && (tracked.isEmpty() || random.nextBoolean());
+                if (add) {
+                    int card = random.nextInt(env.config.deckSize);
+                    if (tracked.contains(card)) continue;
+                    tracker.add(card);
+                    tracked.add(card);
+                } else {
+                    tracker.remove(tracked.remove(random.nextInt(tracked.size())));
+                }
+                List<int[]> expected = util.findSets(toArray(tracked), Integer.MAX_VALUE);
+                assertEquals(expected.size(), tracker.sets());
+                assertEquals(normalized(expected), normalized(tracker.snapshot()));
+            }
+        }
+    }
+}
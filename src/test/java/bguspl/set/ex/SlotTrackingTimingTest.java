@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A timing harness for the table's slot tracking: the free-slot lookup, the card count and token toggling are timed on
+ * tables of 12, 100 and 400 slots, with the only free slot last (the worst case for a scan of the slots). The results
+ * are checked and the timings logged.
+ */
+class SlotTrackingTimingTest {
+
+    private static final Logger logger = Logger.getLogger(SlotTrackingTimingTest.class.getName());
+
+    private static final int ROUNDS = 50;
+    private static final int OPERATIONS = 2_000;
+
+    private static Table table(int rows, int columns) {
+        Properties properties = new Properties();
+        properties.put("Rows", Integer.toString(rows));
+        properties.put("Columns", Integer.toString(columns));
+        properties.put("FeatureCount", "6"); // 729 cards, enough for the largest table
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Table(new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config)));
+    }
+
+    /**
+     * @return - the best time of an operation over the rounds, in nanoseconds.
+     */
+    private static double bestNanos(Runnable operations) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            operations.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / OPERATIONS;
+    }
+
+    @Test
+    void slotLookups_OnTablesOfEverySize() {
+
+        for (int[] layout : new int[][]{{3, 4}, {10, 10}, {20, 20}}) {
+            Table table = table(layout[0], layout[1]);
+            int slots = layout[0] * layout[1];
+            for (int slot = 0; slot < slots - 1; slot++)
+                table.placeCard(slot, slot);
+
+            assertEquals(slots - 1, table.avaliableSlot());
+            assertEquals(slots - 1, table.nextEmptySlot(1));
+            assertEquals(slots - 1, table.countCards());
+            assertFalse(table.isFull());
+
+            int[] found = new int[1];
+            double lookup = bestNanos(() -> {
+                for (int i = 0; i < OPERATIONS; i++)
+                    found[0] += table.avaliableSlot() + (table.isFull() ? 1 : 0) + table.countCards();
+            });
+            double toggle = bestNanos(() -> {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int slot = i % (slots - 1);
+                    if (!table.removeToken(0, slot)) table.placeToken(0, slot);
+                }
+            });
+            assertTrue(found[0] > 0);
+
+            table.placeCard(slots - 1, slots - 1);
+            assertEquals(-1, table.avaliableSlot());
+            assertTrue(table.isFull());
+            logger.info(String.format("slot tracking: %d slots, free slot and count lookup %.0fns, token toggle %.0fns",
+                    slots, lookup, toggle));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.ai.Strategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plays headless games back to back at full speed (no delays, freezes or turn timer) for a few seconds, while checking
+ * the invariants of the table and the conservation of the cards:
+ * - after every change of the table, on the dealer thread: slotToCard and cardToSlot mirror each other, the published
+ *   snapshot matches the table, and the tokens are on cards, at most featureSize per player,
+ * - continuously, on a reader thread: every snapshot is consistent (distinct cards, card count, tokens on cards, legal
+ *   sets of cards on the table) and the snapshot versions only grow,
+ * - after every game: the cards in the deck, on the table and taken in sets add up to the deck size.
+ * The test fails if any invariant was violated, and logs the throughput of the games.
+ */
+class StressTest {
+
+    private static final Logger logger = Logger.getLogger(StressTest.class.getName());
+
+    /**
+     * The time to play, and the strategies of the computer players.
+     */
+    private static final long RUN_MILLIS = 5_000;
+    private static final String[] STRATEGIES = {"random", "random", "greedy", "greedy"};
+
+    /**
+     * The maximal number of violations kept one by one.
+     */
+    private static final int KEPT_VIOLATIONS = 20;
+
+    Properties properties;
+
+    /**
+     * The counters of the run (updated by the dealer threads, the snapshot reader and the test thread).
+     */
+    private final AtomicLong games = new AtomicLong();
+    private final AtomicLong keyPresses = new AtomicLong();
+    private final AtomicLong sets = new AtomicLong();
+    private final AtomicLong tokenOperations = new AtomicLong();
+    private final AtomicLong cardOperations = new AtomicLong();
+    private final AtomicLong snapshotsChecked = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+    private final List<String> violationMessages = new ArrayList<>();
+
+    /**
+     * The table of the game being played (read by the snapshot reader thread).
+     */
+    private volatile Table table;
+    private volatile boolean running = true;
+
+    @BeforeEach
+    void setUp() {
+        properties = new Properties();
+        properties.put("Seed", "1");
+    }
+
+    /**
+     * A table that checks its invariants after every change. Its methods are called by the dealer thread only.
+     */
+    private class CheckedTable extends Table {
+
+        private final Env env;
+
+        private CheckedTable(Env env) {
+            super(env);
+            this.env = env;
+        }
+
+        @Override
+        void placeCard(int card, int slot) {
+            if (cardToSlot[card] != null) violation("card " + card + " placed in slot " + slot + " while in slot " + cardToSlot[card]);
+            super.placeCard(card, slot);
+            cardOperations.incrementAndGet();
+            check();
+        }
+
+        @Override
+        void removeCard(int slot) {
+            super.removeCard(slot);
+            cardOperations.incrementAndGet();
+            check();
+        }
+
+        @Override
+        void placeCards(int[] cards, int[] slots) {
+            for (int i = 0; i < cards.length; i++)
+                if (cardToSlot[cards[i]] != null) violation("card " + cards[i] + " placed in slot " + slots[i] + " while in slot " + cardToSlot[cards[i]]);
+            super.placeCards(cards, slots);
+            cardOperations.addAndGet(cards.length);
+            check();
+        }
+
+        @Override
+        void removeCards(int[] slots) {
+            for (int slot : slots)
+                if (slotToCard[slot] == null) violation("removing a card from the empty slot " + slot);
+            super.removeCards(slots);
+            cardOperations.addAndGet(slots.length);
+            check();
+        }
+
+        @Override
+        void placeToken(int player, int slot) {
+            if (slotToCard[slot] == null) violation("player " + player + " placed a token on the empty slot " + slot);
+            super.placeToken(player, slot);
+            tokenOperations.incrementAndGet();
+            check();
+        }
+
+        @Override
+        boolean removeToken(int player, int slot) {
+            boolean removed = super.removeToken(player, slot);
+            tokenOperations.incrementAndGet();
+            check();
+            return removed;
+        }
+
+        @Override
+        void removeTokens(int player, int[] slots, int count) {
+            super.removeTokens(player, slots, count);
+            tokenOperations.addAndGet(count);
+            check();
+        }
+
+        /**
+         * Checks the table against its invariants and its published snapshot.
+         */
+        private void check() {
+            TableSnapshot snapshot = snapshot();
+            int cards = 0;
+            for (int slot = 0; slot < slotToCard.length; slot++) {
+                Integer card = slotToCard[slot];
+                if (card != null) {
+                    cards++;
+                    if (cardToSlot[card] == null || cardToSlot[card] != slot)
+                        violation("slotToCard[" + slot + "] == " + card + " but cardToSlot[" + card + "] == " + cardToSlot[card]);
+                }
+                if (snapshot.card(slot) != (card == null ? -1 : card))
+                    violation("the snapshot has card " + snapshot.card(slot) + " in slot " + slot + " instead of " + card);
+            }
+            for (int card = 0; card < cardToSlot.length; card++) {
+                Integer slot = cardToSlot[card];
+                if (slot != null && (slotToCard[slot] == null || slotToCard[slot] != card))
+                    violation("cardToSlot[" + card + "] == " + slot + " but slotToCard[" + slot + "] == " + slotToCard[slot]);
+            }
+            if (snapshot.cards() != cards) violation("the snapshot counts " + snapshot.cards() + " cards instead of " + cards);
+
+            for (int player = 0; player < env.config.players; player++) {
+                int tokens = 0;
+                for (int slot = 0; slot < slotToCard.length; slot++) {
+                    boolean token = tokenPlaced(player, slot);
+                    if (token != snapshot.hasToken(player, slot))
+                        violation("the snapshot disagrees on the token of player " + player + " in slot " + slot);
+                    if (token && slotToCard[slot] == null) violation("player " + player + " has a token on the empty slot " + slot);
+                    if (token) tokens++;
+                }
+                if (tokens > env.config.featureSize) violation("player " + player + " has " + tokens + " tokens");
+            }
+        }
+    }
+
+    @Test
+    void games_KeepTheInvariants() throws InterruptedException {
+
+        long startTime = System.currentTimeMillis();
+        Thread reader = new Thread(this::readSnapshots, "snapshot-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long end = startTime + RUN_MILLIS;
+        for (long now; (now = System.currentTimeMillis()) < end; )
+            playGame(end - now);
+        running = false;
+        reader.join();
+
+        double seconds = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+        logger.info(String.format("stress: %d games, %.0f key presses/sec, %.0f token ops/sec, %.0f card ops/sec, %.1f sets/sec, %.0f snapshots checked/sec",
+                games.get(), keyPresses.get() / seconds, tokenOperations.get() / seconds, cardOperations.get() / seconds,
+                sets.get() / seconds, snapshotsChecked.get() / seconds));
+        synchronized (violationMessages) {
+            assertEquals(0L, violations.get(), String.join("\n", violationMessages));
+        }
+        assertTrue(games.get() > 0 && sets.get() > 0 && snapshotsChecked.get() > 0);
+    }
+
+    /**
+     * Plays a single game, or part of it.
+     *
+     * @param millis - the maximal time to play (the game is terminated afterwards).
+     */
+    private void playGame(long millis) throws InterruptedException {
+        long game = games.get();
+        int n = STRATEGIES.length;
+        Properties gameProperties = new Properties();
+        gameProperties.putAll(properties);
+        gameProperties.setProperty("LogLevel", "OFF");
+        gameProperties.setProperty("HumanPlayers", "0");
+        gameProperties.setProperty("ComputerPlayers", Integer.toString(n));
+        gameProperties.setProperty("ComputerStrategies", String.join(",", STRATEGIES));
+        gameProperties.setProperty("PlayerNames", String.join(",", STRATEGIES));
+        gameProperties.setProperty("TurnTimeoutSeconds", "0"); // reshuffle as soon as the table has no sets
+        gameProperties.setProperty("TableDelaySeconds", "0");
+        gameProperties.setProperty("PointFreezeSeconds", "0");
+        gameProperties.setProperty("PenaltyFreezeSeconds", "0");
+        gameProperties.setProperty("EndGamePauseSeconds", "0");
+        // every game gets its own seed, derived from the given one
+        gameProperties.setProperty("Seed", Long.toString(Long.parseLong(properties.getProperty("Seed")) + game));
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, gameProperties);
+        Util util = new UtilImpl(config);
+        Env env = new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+
+        Player[] players = new Player[n];
+        Table table = new CheckedTable(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < n; i++)
+            players[i] = new Player(env, dealer, table, i, false, Strategy.create(STRATEGIES[i], env, config.random("player-" + i)));
+        this.table = table;
+
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        dealerThread.join(Math.max(millis, 1));
+        dealer.terminate();
+        dealerThread.join();
+
+        // the dealer collects the cards from the table when the game ends, all but the ones taken in sets
+        int taken = 0;
+        for (Player player : players) {
+            taken += player.score() * config.featureSize;
+            keyPresses.addAndGet(player.decisions());
+            sets.addAndGet(player.score());
+        }
+        if (dealer.cardsInDeck() + table.countCards() + taken != config.deckSize)
+            violation("game " + game + " ended with " + dealer.cardsInDeck() + " cards in the deck, " + table.countCards()
+                    + " on the table and " + taken + " taken in sets, out of " + config.deckSize);
+        games.incrementAndGet();
+    }
+
+    /**
+     * The main loop of the snapshot reader thread: checks every snapshot of the current table it sees.
+     */
+    private void readSnapshots() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        boolean[] seen = new boolean[config.deckSize];
+        Table checked = null;
+        long lastVersion = -1;
+        while (running) {
+            Table table = this.table;
+            if (table == null) {
+                Thread.yield();
+                continue;
+            }
+            if (table != checked) { // a new game
+                checked = table;
+                lastVersion = -1;
+            }
+            TableSnapshot snapshot = table.snapshot();
+            if (snapshot.version() == lastVersion) {
+                Thread.yield(); // nothing changed since the last check
+                continue;
+            }
+            if (snapshot.version() < lastVersion)
+                violation("snapshot version " + snapshot.version() + " published after version " + lastVersion);
+            lastVersion = snapshot.version();
+
+            int cards = 0;
+            Arrays.fill(seen, false);
+            for (int slot = 0; slot < snapshot.slots(); slot++) {
+                int card = snapshot.card(slot);
+                if (card < 0) {
+                    for (int player = 0; player < STRATEGIES.length; player++)
+                        if (snapshot.hasToken(player, slot)) violation("snapshot " + snapshot.version() + " has a token on the empty slot " + slot);
+                    continue;
+                }
+                if (seen[card]) violation("snapshot " + snapshot.version() + " has card " + card + " in two slots");
+                seen[card] = true;
+                cards++;
+            }
+            if (snapshot.cards() != cards)
+                violation("snapshot " + snapshot.version() + " counts " + snapshot.cards() + " cards instead of " + cards);
+            for (int[] set : snapshot.sets()) {
+                for (int card : set)
+                    if (snapshot.slotOf(card) < 0) violation("snapshot " + snapshot.version() + " has a set with card " + card + ", which is not on the table");
+                if (!util.testSet(set)) violation("snapshot " + snapshot.version() + " has an illegal set " + Arrays.toString(set));
+            }
+            snapshotsChecked.incrementAndGet();
+        }
+    }
+
+    private void violation(String message) {
+        if (violations.incrementAndGet() <= KEPT_VIOLATIONS) {
+            synchronized (violationMessages) {
+                violationMessages.add(message);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A timing harness for the table snapshots: the test thread changes the table as the dealer does (the single writer)
+ * while reader threads read snapshots as the players, the AI and the UI do. Every snapshot read is checked for
+ * consistency, and the writer's and readers' rates are logged for 0 to 4 readers.
+ */
+class TableSnapshotTimingTest {
+
+    private static final Logger logger = Logger.getLogger(TableSnapshotTimingTest.class.getName());
+
+    private static final long RUN_MILLIS = 200;
+
+    Env env;
+    Table table;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Rows", "3");
+        properties.put("Columns", "4");
+        properties.put("PlayerKeys1", "81,87,69,82");
+        properties.put("PlayerKeys2", "85,73,79,80");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        for (int slot = 0; slot < config.tableSize; slot++)
+            table.placeCard(slot, slot);
+    }
+
+    /**
+     * @return - a description of the first inconsistency in the snapshot, or null if it is consistent.
+     */
+    private String inconsistency(TableSnapshot snapshot) {
+        int cards = 0;
+        for (int slot = 0; slot < snapshot.slots(); slot++) {
+            if (snapshot.card(slot) >= 0) cards++;
+            else for (int player = 0; player < env.config.players; player++)
+                if (snapshot.hasToken(player, slot)) return "a token on the empty slot " + slot;
+        }
+        if (cards != snapshot.cards()) return cards + " cards counted as " + snapshot.cards();
+        for (int[] set : snapshot.sets())
+            for (int card : set)
+                if (snapshot.slotOf(card) < 0) return "a set with card " + card + " that is not on the table";
+        return null;
+    }
+
+    @Test
+    void snapshots_StayConsistentWhileTheDealerWrites() throws InterruptedException {
+
+        for (int readers : new int[]{0, 1, 2, 4}) {
+            AtomicLong reads = new AtomicLong();
+            AtomicReference<String> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[readers];
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+            for (int i = 0; i < readers; i++) {
+                threads[i] = new Thread(() -> {
+                    long version = -1;
+                    long count = 0;
+                    while (System.nanoTime() < end && failure.get() == null) {
+                        TableSnapshot snapshot = table.snapshot();
+                        String inconsistency = snapshot.version() < version ? "the version went back" : inconsistency(snapshot);
+                        if (inconsistency != null) failure.compareAndSet(null, inconsistency);
+                        version = snapshot.version();
+                        count++;
+                    }
+                    reads.addAndGet(count);
+                });
+                threads[i].start();
+            }
+
+            long writes = write(end);
+            for (Thread thread : threads)
+                thread.join();
+
+            assertNull(failure.get());
+            assertEquals(env.config.tableSize, table.countCards());
+            assertTrue(readers == 0 || reads.get() > 0, "the readers read no snapshots");
+            logger.info(String.format("table snapshots: %d readers, %,d writes/s, %,d reads/s", readers,
+                    writes * 1000 / RUN_MILLIS, reads.get() * 1000 / RUN_MILLIS));
+        }
+    }
+
+    /**
+     * Changes the table until the given time, as the dealer does: players' tokens are toggled, and every few changes
+     * a card is taken off the table and put back.
+     * @return - the number of changes.
+     */
+    private long write(long end) {
+        int[] slot = new int[1];
+        int[] card = new int[1];
+        long writes = 0;
+        for (int i = 0; System.nanoTime() < end; i++) {
+            slot[0] = i % env.config.tableSize;
+            int player = i % env.config.players;
+            if (i % 8 == 7) {
+                card[0] = table.snapshot().card(slot[0]);
+                table.removeCards(slot);
+                table.placeCards(card, slot);
+            } else if (!table.removeToken(player, slot[0])) {
+                table.placeToken(player, slot[0]);
+            }
+            writes++;
+        }
+        assertTrue(writes > 0);
+        return writes;
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
@@ -40,19 +41,15 @@ class TableTest {
     }
 
     private int fillSomeSlots() {
-        slotToCard[1] = 3;
-        slotToCard[2] = 5;
-        cardToSlot[3] = 1;
-        cardToSlot[5] = 2;
+        table.placeCard(3, 1);
+        table.placeCard(5, 2);
 
         return 2;
     }
 
     private void fillAllSlots() {
-        for (int i = 0; i < slotToCard.length; ++i) {
-            slotToCard[i] = i;
-            cardToSlot[i] = i;
-        }
+        for (int i = 0; i < slotToCard.length; ++i)
+            table.placeCard(i, i);
     }
 
     private void placeSomeCardsAndAssert() throws InterruptedException {
@@ -62,6 +59,21 @@ class TableTest {
         assertEquals(2, (int) cardToSlot[8]);
     }
 
+    @Test
+    void avaliableSlot_TracksPlacedAndRemovedCards() {
+        assertEquals(0, table.avaliableSlot());
+        fillSomeSlots();
+        assertEquals(0, table.avaliableSlot());
+        assertEquals(3, table.nextEmptySlot(1));
+        table.placeCard(7, 0);
+        table.placeCard(9, 3);
+        assertEquals(-1, table.avaliableSlot());
+        assertTrue(table.isFull());
+        table.removeCard(2);
+        assertEquals(2, table.avaliableSlot());
+        assertEquals(3, table.countCards());
+    }
+
     @Test
     void countCards_NoSlotsAreFilled() {
 
@@ -103,6 +115,10 @@ class TableTest {
         @Override
         public void removeCard(int slot) {}
         @Override
+        public void placeCards(int[] cards, int[] slots) {}
+        @Override
+        public void removeCards(int[] slots) {}
+        @Override
         public void setCountdown(long millies, boolean warn) {}
         @Override
         public void setElapsed(long millies) {}
@@ -111,6 +127,12 @@ class TableTest {
         @Override
         public void setFreeze(int player, long millies) {}
         @Override
+        public void setCountdownDeadline(long deadline, long warnMillis) {}
+        @Override
+        public void setElapsedSince(long start) {}
+        @Override
+        public void setFreezeDeadline(int player, long deadline) {}
+        @Override
         public void placeToken(int player, int slot) {}
         @Override
         public void removeTokens() {}
@@ -138,11 +160,26 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public long[] testSets(int[] candidates) {
+            return new long[0];
+        }
+
+        @Override
+        public int completeSet(int[] cards) {
+            return -1;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
         }
 
+        @Override
+        public List<int[]> findSets(int[] deck, int count) {
+            return null;
+        }
+
         @Override
         public void spin() {}
     }
@@ -0,0 +1,139 @@
+package bguspl.set.ex.ai;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterfaceDecorator;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StrategyTest {
+
+    private static final int PRESSES = 1_000;
+
+    Env env;
+
+    @BeforeEach
+    void setUp() {
+        env = env(new Properties());
+    }
+
+    private static Env env(Properties properties) {
+        properties.put("Seed", "1");
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        return new Env(logger, config, new UserInterfaceDecorator(logger, util, null), util);
+    }
+
+    /**
+     * @param cards - the number of cards to place in the first slots (card i in slot i).
+     * @return - a table with the cards.
+     */
+    private Table table(int cards) {
+        Integer[] slotToCard = new Integer[env.config.tableSize];
+        Integer[] cardToSlot = new Integer[env.config.deckSize];
+        for (int slot = 0; slot < cards; slot++) {
+            slotToCard[slot] = slot;
+            cardToSlot[slot] = slot;
+        }
+        return new Table(env, slotToCard, cardToSlot);
+    }
+
+    private void assertValidSlot(int slot) {
+        assertTrue(slot >= -1 && slot < env.config.tableSize, "slot " + slot + " is not on the table");
+    }
+
+    @Test
+    void random_PressesSlotsOfTheTable() {
+
+        Strategy strategy = Strategy.create("random", env, env.config.random("player-0"));
+        Table table = table(env.config.tableSize);
+        for (int i = 0; i < PRESSES; i++)
+            assertValidSlot(strategy.nextPress(table, 0));
+    }
+
+    @Test
+    void greedy_PressesTheSlotsOfASet() {
+
+        Strategy strategy = Strategy.create("greedy", env, env.config.random("player-0"));
+        Table table = table(env.config.tableSize);
+        assertTrue(table.countSets() > 0);
+
+        int[] cards = new int[env.config.featureSize];
+        for (int i = 0; i < cards.length; i++) {
+            int slot = strategy.nextPress(table, 0);
+            assertTrue(slot >= 0 && slot < env.config.tableSize, "slot " + slot + " is not on the table");
+            cards[i] = table.snapshot().card(slot);
+        }
+        assertTrue(env.util.testSet(cards));
+        assertEquals(-1, strategy.nextPress(table, 0)); // the tokens were not placed, so the presses are planned again later
+    }
+
+    @Test
+    void greedy_AnEmptyTable_PressesNothing() {
+
+        Strategy strategy = Strategy.create("greedy", env, env.config.random("player-0"));
+        Table table = table(0);
+        for (int i = 0; i < PRESSES; i++)
+            assertEquals(-1, strategy.nextPress(table, 0));
+    }
+
+    @Test
+    void delayed_PressesTheSlotsOfTheWrappedStrategy() {
+
+        Strategy strategy = Strategy.create("delayed", env, env.config.random("player-0"));
+        Table table = table(env.config.tableSize);
+        int slot = strategy.nextPress(table, 0);
+        assertTrue(slot >= 0 && slot < env.config.tableSize, "slot " + slot + " is not on the table");
+        assertEquals(-1, strategy.nextPress(table(0), 0));
+    }
+
+    @Test
+    void delayed_Interrupted_PressesNothing() {
+
+        Strategy strategy = Strategy.create("delayed", env, env.config.random("player-0"));
+        Table table = table(env.config.tableSize);
+        Thread.currentThread().interrupt();
+        long start = System.currentTimeMillis();
+        assertEquals(-1, strategy.nextPress(table, 0));
+        assertTrue(Thread.interrupted()); // the interrupt is kept for the caller, and cleared here
+        assertTrue(System.currentTimeMillis() - start < 300);
+    }
+
+    @Test
+    void delayed_StopsWaitingWhenTheGameTerminates() throws InterruptedException {
+
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("ComputerStrategies", "delayed, delayed");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        env = env(properties);
+        Player[] players = new Player[env.config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false, Strategy.create("delayed", env, env.config.random("player-" + i)));
+
+        Thread dealerThread = new Thread(dealer, "dealer");
+        dealerThread.start();
+        Thread.sleep(100); // the players are waiting before their first presses
+        long start = System.currentTimeMillis();
+        dealer.terminate();
+        dealerThread.join();
+        assertTrue(System.currentTimeMillis() - start < 250, "the game took " + (System.currentTimeMillis() - start) + "ms to terminate");
+    }
+}
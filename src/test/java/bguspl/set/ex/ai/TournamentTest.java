@@ -0,0 +1,33 @@
+package bguspl.set.ex.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TournamentTest {
+
+    @Test
+    void play_ASmallTournament_SeatsEveryStrategy() throws InterruptedException, ExecutionException {
+
+        Properties properties = new Properties();
+        properties.put("Seed", "1");
+        properties.put("FeatureCount", "3"); // a short game of 27 cards
+        properties.put("TurnTimeoutSeconds", "0");
+        properties.put("PointFreezeSeconds", "0");
+        properties.put("PenaltyFreezeSeconds", "0");
+        String[] strategies = {"random", "greedy"};
+        Tournament tournament = new Tournament(properties, strategies, null, null);
+        tournament.play(1);
+
+        double wins = 0;
+        for (String strategy : strategies) {
+            assertEquals(1, tournament.seats(strategy));
+            wins += tournament.wins(strategy);
+        }
+        assertTrue(Math.abs(wins - 1) < 1e-9, "the strategies won " + wins + " games");
+    }
+}